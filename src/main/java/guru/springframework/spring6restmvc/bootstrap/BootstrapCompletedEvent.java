@@ -0,0 +1,13 @@
+package guru.springframework.spring6restmvc.bootstrap;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published once {@link BootstrapData} has loaded the sample data, i.e. the database holds its full content.
+ */
+public class BootstrapCompletedEvent extends ApplicationEvent {
+
+    public BootstrapCompletedEvent(BootstrapData source) {
+        super(source);
+    }
+}
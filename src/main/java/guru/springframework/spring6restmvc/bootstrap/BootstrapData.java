@@ -2,77 +2,202 @@ package guru.springframework.spring6restmvc.bootstrap;
 
 import guru.springframework.spring6restmvc.entities.Beer;
 import guru.springframework.spring6restmvc.entities.Customer;
-import guru.springframework.spring6restmvc.model.BeerCSVRecord;
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
 import guru.springframework.spring6restmvc.repositories.BeerRepository;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import guru.springframework.spring6restmvc.services.BeerCsvService;
-import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.StringUtils;
-import org.springframework.boot.CommandLineRunner;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.ResourceUtils;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Loads the sample data into an empty database.
+ * <p>
+ * Seeding starts once the application is ready and, with {@code bootstrap.async} (the default), runs on its own
+ * thread - the web server is already serving, and even the checks for existing data stay off the startup path.
+ * Until it's done this reports OUT_OF_SERVICE as the "bootstrapData" health contributor, which is part of the
+ * readiness group, so a load balancer holds traffic back from a replica that's still seeding. Completion is
+ * announced with a {@link BootstrapCompletedEvent}.
+ * <p>
+ * The CSV catalog is parsed and mapped to beers in parallel (see {@link BeerCsvService#parseCSV}), feeding a
+ * bounded queue. The seeding thread drains the queue and persists the beers in chunks, each in its own transaction, with
+ * Hibernate sending the inserts as JDBC batches. The persistence context is flushed and cleared after every chunk,
+ * and the queue is bounded, so memory use doesn't grow with the size of the seed file.
+ */
+@Slf4j
 @Component
-@RequiredArgsConstructor
-public class BootstrapData implements CommandLineRunner {
+public class BootstrapData implements HealthIndicator {
+
+    private static final int CHUNK_SIZE = 1000;
 
     private final BeerRepository beerRepository;
     private final CustomerRepository customerRepository;
     private final BeerCsvService beerCsvService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean async;
+
+    private volatile Health health = Health.outOfService().withDetail("seeding", "pending").build();
+
+    public BootstrapData(BeerRepository beerRepository,
+                         CustomerRepository customerRepository,
+                         BeerCsvService beerCsvService,
+                         TransactionTemplate transactionTemplate,
+                         EntityManager entityManager,
+                         ApplicationEventPublisher eventPublisher,
+                         @Value("${bootstrap.async:true}") boolean async) {
+        this.beerRepository = beerRepository;
+        this.customerRepository = customerRepository;
+        this.beerCsvService = beerCsvService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.async = async;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() throws Exception {
+        if (!async) {
+            seed(); // a failure fails the startup
+            return;
+        }
+
+        Thread.ofPlatform().name("bootstrap-data").start(() -> {
+            try {
+                seed();
+            } catch (Exception e) {
+                log.error("Loading the sample data failed", e); // and the instance never gets ready
+            }
+        });
+    }
+
+    /**
+     * Loads whatever sample data is missing, then reports UP and publishes a {@link BootstrapCompletedEvent}.
+     */
+    public void seed() throws Exception {
+        health = Health.outOfService().withDetail("seeding", "running").build();
+        long start = System.nanoTime();
+
+        try {
+            loadBeerData();
+            loadCsvData();
+            loadCustomerData();
+        } catch (Exception e) {
+            health = Health.down(e).build();
+            throw e;
+        }
+
+        long seedMillis = millis(System.nanoTime() - start);
+        log.info("Sample data ready in {} ms", seedMillis);
+
+        health = Health.up().withDetail("seedMillis", seedMillis).build();
+        eventPublisher.publishEvent(new BootstrapCompletedEvent(this));
+    }
 
-    @Transactional
     @Override
-    public void run(String... args) throws Exception {
-        loadBeerData();
-        loadCsvData();
-        loadCustomerData();
+    public Health health() {
+        return health;
     }
 
-    private void loadCsvData() throws FileNotFoundException {
+    private void loadCsvData() throws FileNotFoundException, InterruptedException {
         if (beerRepository.count() < 10) {
             File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
-            List<BeerCSVRecord> recs = beerCsvService.convertCSV(file);
-
-            recs.forEach(beerCSVRecord -> {
-                BeerStyle beerStyle = switch (beerCSVRecord.getStyle()) {
-                    case "American Pale Lager" -> BeerStyle.LAGER;
-                    case "American Pale Ale (APA)", "American Black Ale", "Belgian Dark Ale", "American Blonde Ale" ->
-                            BeerStyle.ALE;
-                    case "American IPA", "American Double / Imperial IPA", "Belgian IPA" -> BeerStyle.IPA;
-                    case "American Porter" -> BeerStyle.PORTER;
-                    case "Oatmeal Stout", "American Stout" -> BeerStyle.STOUT;
-                    case "Saison / Farmhouse Ale" -> BeerStyle.SAISON;
-                    case "Fruit / Vegetable Beer", "Winter Warmer", "Berliner Weissbier" -> BeerStyle.WHEAT;
-                    case "English Pale Ale" -> BeerStyle.PALE_ALE;
-                    default -> BeerStyle.PILSNER;
-                };
-
-                beerRepository.save(Beer.builder()
-                        // apachecommons' StringUtils.abbreviate(string, maxWidth) limits max width of the string
-                        .beerName(StringUtils.abbreviate(beerCSVRecord.getBeer(), 50))
-                        .beerStyle(beerStyle)
-                        .price(BigDecimal.TEN) // hardcoded since the price is missing in CSV data
-                        .upc(beerCSVRecord.getRow().toString())
-                        .quantityOnHand(beerCSVRecord.getCount())
-                        .build()
-                );
+
+            long start = System.nanoTime();
+            BlockingQueue<Beer> mapped = new ArrayBlockingQueue<>(4 * CHUNK_SIZE);
+            AtomicBoolean aborted = new AtomicBoolean(false);
+
+            CompletableFuture<Long> parsing = CompletableFuture.supplyAsync(() -> {
+                beerCsvService.parseCSV(file, true, beerCSVRecord -> enqueue(mapped, aborted,
+                        beerCsvService.toBeer(beerCSVRecord)));
+                return System.nanoTime() - start;
             });
 
+            long persistNanos = 0;
+            int persisted = 0;
+
+            try {
+                List<Beer> chunk = new ArrayList<>(CHUNK_SIZE);
+
+                while (!parsing.isDone() || !mapped.isEmpty()) {
+                    Beer beer = mapped.poll(10, TimeUnit.MILLISECONDS);
+
+                    if (beer != null)
+                        chunk.add(beer);
+
+                    if (chunk.size() == CHUNK_SIZE) {
+                        persistNanos += persist(chunk);
+                        persisted += chunk.size();
+                        chunk.clear();
+                    }
+                }
+
+                long parseNanos = parsing.join(); // rethrows if parsing failed
+
+                if (!chunk.isEmpty()) {
+                    persistNanos += persist(chunk);
+                    persisted += chunk.size();
+                }
+
+                log.info("Loaded {} beers from CSV in {} ms - parse and map: {} ms, persist: {} ms",
+                        persisted, millis(System.nanoTime() - start), millis(parseNanos), millis(persistNanos));
+            } finally {
+                aborted.set(true); // lets the parser threads give up if persisting failed
+            }
+        }
+    }
+
+    private static void enqueue(BlockingQueue<Beer> mapped, AtomicBoolean aborted, Beer beer) {
+        try {
+            while (!mapped.offer(beer, 100, TimeUnit.MILLISECONDS)) {
+                if (aborted.get())
+                    throw new CancellationException("CSV load aborted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("CSV load interrupted");
         }
     }
 
+    private long persist(List<Beer> chunk) {
+        long start = System.nanoTime();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            beerRepository.saveAll(chunk);
+            // send the batched inserts now, and let go of the saved beers before the next chunk
+            entityManager.flush();
+            entityManager.clear();
+        });
+
+        return System.nanoTime() - start;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
     private void loadBeerData() {
         if (beerRepository.count() == 0) {
             Beer beer1 = Beer.builder()
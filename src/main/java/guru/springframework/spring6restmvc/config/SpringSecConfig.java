@@ -12,6 +12,8 @@ public class SpringSecConfig {
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http.authorizeHttpRequests(authorize -> {
+            // health and the liveness/readiness probes are polled by the platform, without a token
+            authorize.requestMatchers("/actuator/health", "/actuator/health/**").permitAll();
             authorize.anyRequest().authenticated();
         }).oauth2ResourceServer(httpSecurityOAuth2ResourceServerConfigurer -> {
             httpSecurityOAuth2ResourceServerConfigurer.jwt(Customizer.withDefaults());
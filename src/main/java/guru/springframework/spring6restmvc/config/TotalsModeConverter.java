@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.config;
+
+import guru.springframework.spring6restmvc.model.TotalsMode;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets clients pass the totals mode in lower case ({@code ?totals=none}), Spring MVC would only accept the
+ * exact enum constant otherwise. Spring Boot picks up Converter beans and registers them with MVC.
+ */
+@Component
+public class TotalsModeConverter implements Converter<String, TotalsMode> {
+
+    @Override
+    public TotalsMode convert(String source) {
+        return TotalsMode.valueOf(source.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,15 @@
+package guru.springframework.spring6restmvc.controller;
+
+/**
+ * A request the client has to change before trying again - an invalid cursor, page size or order, say. Answered
+ * with 400 and the message (see CustomErrorController).
+ */
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+
+    public BadRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,17 +1,39 @@
 package guru.springframework.spring6restmvc.controller;
 
+import guru.springframework.spring6restmvc.model.BatchItemResult;
 import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerImportJob;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.InventoryAdjustment;
+import guru.springframework.spring6restmvc.model.PurgeResult;
+import guru.springframework.spring6restmvc.model.SalesReportDTO;
+import guru.springframework.spring6restmvc.model.TotalsMode;
+import guru.springframework.spring6restmvc.services.BeerBatchService;
+import guru.springframework.spring6restmvc.services.BeerExportService;
+import guru.springframework.spring6restmvc.services.BeerImportService;
+import guru.springframework.spring6restmvc.services.BeerInventoryService;
+import guru.springframework.spring6restmvc.services.BeerSalesService;
 import guru.springframework.spring6restmvc.services.BeerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 
 @Slf4j
@@ -21,13 +43,54 @@ public class BeerController {
 
     public static final String BEER_PATH = "/api/v1/beer";
     public static final String BEER_PATH_ID = BEER_PATH + "/{beerId}";
+    public static final String BEER_EXPORT_PATH = BEER_PATH + "/export";
+    public static final String BEER_IMPORT_PATH = BEER_PATH + "/import";
+    public static final String BEER_IMPORT_PATH_ID = BEER_IMPORT_PATH + "/{jobId}";
+    public static final String BEER_BATCH_PATH = BEER_PATH + "/batch";
+    public static final String BEER_PURGE_PATH = BEER_PATH + "/purge";
+    public static final String BEER_INVENTORY_PATH = BEER_PATH_ID + "/inventory";
+    public static final String BEER_INVENTORY_STRIPES_PATH = BEER_INVENTORY_PATH + "/stripes";
+    public static final String BEER_SALES_PATH = BEER_PATH + "/sales";
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    public static final MediaType CSV = MediaType.parseMediaType("text/csv");
 
     private final BeerService beerService;
+    private final BeerExportService beerExportService;
+    private final BeerImportService beerImportService;
+    private final BeerBatchService beerBatchService;
+    private final BeerInventoryService beerInventoryService;
+    private final BeerSalesService beerSalesService;
 
     @PatchMapping(BEER_PATH_ID)
     public ResponseEntity updateBeerPatchById(@PathVariable("beerId") UUID beerId, @RequestBody BeerDTO beer) {
 
-        beerService.patchBeerById(beerId, beer);
+        if (!beerService.patchBeerById(beerId, beer)) {
+            throw new NotFoundException();
+        }
+
+        return new ResponseEntity(HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Adds to (or, with a negative delta, takes out of) the stock - 409 if there isn't enough of it.
+     */
+    @PostMapping(BEER_INVENTORY_PATH)
+    public BeerDTO adjustInventory(@PathVariable("beerId") UUID beerId,
+                                   @Validated @RequestBody InventoryAdjustment adjustment) {
+        return beerInventoryService.adjustQuantityOnHand(beerId, adjustment.getDelta())
+                .orElseThrow(NotFoundException::new);
+    }
+
+    /**
+     * Spreads the stock of a hot beer over {@code stripes} rows, so concurrent stock changes don't queue up for a
+     * single row lock - 0 puts it back into the beer row.
+     */
+    @PutMapping(BEER_INVENTORY_STRIPES_PATH)
+    public ResponseEntity stripeInventory(@PathVariable("beerId") UUID beerId, @RequestParam int stripes) {
+        if (!beerInventoryService.stripeQuantityOnHand(beerId, stripes)) {
+            throw new NotFoundException();
+        }
 
         return new ResponseEntity(HttpStatus.NO_CONTENT);
     }
@@ -45,7 +108,7 @@ public class BeerController {
     public ResponseEntity updateById(@PathVariable("beerId") UUID beerId, @Validated @RequestBody BeerDTO beer) {
 
 
-        if (beerService.updateBeerById(beerId, beer).isEmpty()) {
+        if (!beerService.updateBeerById(beerId, beer)) {
             throw new NotFoundException();
         }
 
@@ -64,23 +127,146 @@ public class BeerController {
 
     }
 
+    /**
+     * Creates (no id) or updates (with id) many beers in one request. Each beer gets its own result, at the same
+     * index - invalid, unknown or outdated (by {@code version}) beers are reported and skipped, the others applied.
+     */
+    @PostMapping(BEER_BATCH_PATH)
+    public List<BatchItemResult> batchSaveBeers(@RequestBody List<BeerDTO> beers) {
+        return beerBatchService.saveBeers(beers);
+    }
+
+    /**
+     * Best sellers overall and per style, over the order lines created from {@code from} through {@code to}
+     * (ISO dates, both included) - served from a cache for a few minutes.
+     */
+    @GetMapping(BEER_SALES_PATH)
+    public SalesReportDTO getSalesReport(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        return beerSalesService.getSalesReport(from, to, limit);
+    }
+
+    /**
+     * Deletes the beers of a style with at most {@code maxQuantityOnHand} in stock, except the ones on an order.
+     */
+    @PostMapping(BEER_PURGE_PATH)
+    public PurgeResult purgeBeers(@RequestParam BeerStyle beerStyle,
+                                  @RequestParam(defaultValue = "0") int maxQuantityOnHand) {
+        return beerBatchService.purgeBeers(beerStyle, maxQuantityOnHand);
+    }
+
     @GetMapping(BEER_PATH)
-    public Page<BeerDTO> listBeers(
+    public ResponseEntity<Page<BeerDTO>> listBeers(
             @RequestParam(required = false) String beerName,
             @RequestParam(required = false) BeerStyle beerStyle,
             @RequestParam(required = false) Boolean showInventory,
             @RequestParam(required = false) Integer pageNumber,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        Page<BeerDTO> page = beerService.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        String etag = ETags.weak(page);
+
+        // the page still had to be read, but an unchanged one isn't sent again
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(page);
+    }
+
+    /**
+     * Beer listing with an explicit {@code totals} mode - {@code exact} (same as without the parameter),
+     * {@code none} (a Slice without any count query, e.g. for infinite scroll) or {@code estimate}
+     * (a Page whose total comes from a short-lived cached count).
+     */
+    @GetMapping(value = BEER_PATH, params = {"totals", "!after"})
+    public Slice<BeerDTO> listBeersWithTotals(
+            @RequestParam(required = false) String beerName,
+            @RequestParam(required = false) BeerStyle beerStyle,
+            @RequestParam(required = false) Boolean showInventory,
+            @RequestParam(required = false) Integer pageNumber,
+            @RequestParam(required = false) Integer pageSize,
+            @RequestParam TotalsMode totals) {
+        return beerService.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize, totals);
+    }
+
+    /**
+     * Keyset (cursor) mode of the beer listing - picked whenever the {@code after} parameter is present.
+     * Pass an empty {@code after} to get the first page, then the {@code next} token of each response to get the
+     * page after it. Latency stays the same no matter how deep the client pages.
+     */
+    @GetMapping(value = BEER_PATH, params = "after")
+    public CursorPage<BeerDTO> listBeersAfter(
+            @RequestParam(required = false) String beerName,
+            @RequestParam(required = false) BeerStyle beerStyle,
+            @RequestParam(required = false) Boolean showInventory,
+            @RequestParam String after,
             @RequestParam(required = false) Integer pageSize) {
-        return beerService.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        return beerService.listBeersAfter(beerName, beerStyle, showInventory, after, pageSize);
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON ({@code format=ndjson}, the default) or CSV ({@code format=csv}).
+     * The rows are written while they're read, on an async thread, so the response can be of any size.
+     */
+    @GetMapping(BEER_EXPORT_PATH)
+    public ResponseEntity<StreamingResponseBody> exportBeers(@RequestParam(defaultValue = "ndjson") String format) {
+
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> ResponseEntity.ok()
+                    .contentType(NDJSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"beers.ndjson\"")
+                    .body(beerExportService::exportNdjson);
+            case "csv" -> ResponseEntity.ok()
+                    .contentType(CSV)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"beers.csv\"")
+                    .body(beerExportService::exportCsv);
+            default -> throw new BadRequestException("Unsupported export format: " + format);
+        };
+    }
+
+    /**
+     * Starts a bulk import of a CSV upload (same format as the bootstrap data) and returns right away with the
+     * job, whose status is at the Location header.
+     */
+    @PostMapping(BEER_IMPORT_PATH)
+    public ResponseEntity<BeerImportJob> importBeers(@RequestParam("file") MultipartFile file) throws IOException {
+
+        BeerImportJob job;
+        try (InputStream csv = file.getInputStream()) {
+            job = beerImportService.startImport(csv, file.getOriginalFilename());
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Location", BEER_IMPORT_PATH + "/" + job.getId().toString());
+
+        return new ResponseEntity<>(job, headers, HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping(BEER_IMPORT_PATH_ID)
+    public BeerImportJob getImportJob(@PathVariable("jobId") UUID jobId) {
+        return beerImportService.getImportJob(jobId).orElseThrow(NotFoundException::new);
     }
 
     @GetMapping(BEER_PATH_ID)
-    public BeerDTO getBeerById(@PathVariable("beerId") UUID beerId) {
+    public ResponseEntity<BeerDTO> getBeerById(@PathVariable("beerId") UUID beerId,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                               String ifNoneMatch) {
 
         log.debug("Get Beer by Id - in controller. Id: " + beerId.toString());
 
         // return the beer, or throw an exception if it's missing
-        return beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        BeerDTO beer = beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        // tag and body come from the same (usually cached) beer, so a 304 means the client holds exactly that one
+        String etag = ETags.strong(beer);
+
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(beer);
     }
 
 }
@@ -0,0 +1,47 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.services.BeerOrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RequiredArgsConstructor
+@RestController
+public class BeerOrderController {
+
+    public static final String BEER_ORDER_PATH = "/api/v1/beerorder";
+    public static final String BEER_ORDER_PATH_ID = BEER_ORDER_PATH + "/{beerOrderId}";
+
+    private final BeerOrderService beerOrderService;
+
+    @PostMapping(BEER_ORDER_PATH)
+    public ResponseEntity<BeerOrderDTO> placeOrder(@Validated @RequestBody BeerOrderCreateDTO beerOrder) {
+
+        BeerOrderDTO savedOrder = beerOrderService.placeOrder(beerOrder);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Location", BEER_ORDER_PATH + "/" + savedOrder.getId().toString());
+
+        return new ResponseEntity<>(savedOrder, headers, HttpStatus.CREATED);
+    }
+
+    @GetMapping(BEER_ORDER_PATH_ID)
+    public BeerOrderDTO getOrderById(@PathVariable("beerOrderId") UUID beerOrderId) {
+        return beerOrderService.getOrderById(beerOrderId).orElseThrow(NotFoundException::new);
+    }
+
+    @GetMapping(BEER_ORDER_PATH)
+    public Page<BeerOrderDTO> listOrders(@RequestParam(required = false) UUID customerId,
+                                         @RequestParam(required = false) Integer pageNumber,
+                                         @RequestParam(required = false) Integer pageSize) {
+        return beerOrderService.listOrders(customerId, pageNumber, pageSize);
+    }
+}
@@ -1,6 +1,8 @@
 package guru.springframework.spring6restmvc.controller;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -38,6 +40,36 @@ public class CustomErrorController {
         return responseEntity.build();
     }
 
+    // constraints checked by hand, e.g. for writes that bypass the entity lifecycle
+    @ExceptionHandler(ConstraintViolationException.class)
+    ResponseEntity handleConstraintViolations(ConstraintViolationException exception) {
+
+        List errors = exception.getConstraintViolations().stream()
+                .map(constraintViolation -> {
+                    Map<String, String> errorMap = new HashMap<>();
+                    errorMap.put(
+                            constraintViolation.getPropertyPath().toString(),
+                            constraintViolation.getMessage()
+                    );
+                    return errorMap;
+                }).collect(Collectors.toList());
+
+        return ResponseEntity.badRequest().body(errors);
+    }
+
+    // the client changed a row based on an outdated version of it
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    ResponseEntity handleOptimisticLocking(OptimisticLockingFailureException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(List.of(Map.of("error", String.valueOf(exception.getMessage()))));
+    }
+
+    // e.g. a keyset pagination cursor that was tampered with
+    @ExceptionHandler(BadRequestException.class)
+    ResponseEntity handleBadRequests(BadRequestException exception) {
+        return ResponseEntity.badRequest().body(List.of(Map.of("error", String.valueOf(exception.getMessage()))));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     ResponseEntity handleBindErrors(MethodArgumentNotValidException exception) {
 
@@ -1,12 +1,23 @@
 package guru.springframework.spring6restmvc.controller;
 
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.model.RollupRebuildResult;
+import guru.springframework.spring6restmvc.services.BeerOrderService;
+import guru.springframework.spring6restmvc.services.CustomerBatchService;
+import guru.springframework.spring6restmvc.services.CustomerExportService;
+import guru.springframework.spring6restmvc.services.CustomerOrderRollupService;
 import guru.springframework.spring6restmvc.services.CustomerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -17,13 +28,24 @@ public class CustomerController {
 
     public static final String CUSTOMER_PATH = "/api/v1/customer";
     public static final String CUSTOMER_PATH_ID = CUSTOMER_PATH + "/{customerId}";
+    public static final String CUSTOMER_EXPORT_PATH = CUSTOMER_PATH + "/export";
+    public static final String CUSTOMER_BATCH_PATH = CUSTOMER_PATH + "/batch";
+    public static final String CUSTOMER_ORDERS_PATH = CUSTOMER_PATH_ID + "/orders";
+    public static final String CUSTOMER_ROLLUP_PATH = CUSTOMER_PATH_ID + "/rollup";
+    public static final String CUSTOMER_ROLLUP_REBUILD_PATH = CUSTOMER_PATH + "/rollup/rebuild";
 
     private final CustomerService customerService;
+    private final CustomerExportService customerExportService;
+    private final CustomerBatchService customerBatchService;
+    private final BeerOrderService beerOrderService;
+    private final CustomerOrderRollupService customerOrderRollupService;
 
     @PatchMapping(CUSTOMER_PATH_ID)
     public ResponseEntity patchCustomerById(@PathVariable("customerId") UUID customerId,
                                             @RequestBody CustomerDTO customer) {
-        customerService.patchCustomerById(customerId, customer);
+        if (!customerService.patchCustomerById(customerId, customer)) {
+            throw new NotFoundException();
+        }
         return new ResponseEntity(HttpStatus.NO_CONTENT);
     }
 
@@ -39,7 +61,7 @@ public class CustomerController {
     public ResponseEntity updateCustomerById(@PathVariable("customerId") UUID customerId,
                                              @RequestBody CustomerDTO customer) {
 
-        if (customerService.updateCustomerById(customerId, customer).isEmpty()) {
+        if (!customerService.updateCustomerById(customerId, customer)) {
             throw new NotFoundException();
         }
 
@@ -56,14 +78,86 @@ public class CustomerController {
         return new ResponseEntity(headers, HttpStatus.CREATED);
     }
 
+    /**
+     * Bulk upsert, e.g. for CRM syncs - inserts the customers without an id and updates the ones with an id.
+     * Each customer gets its own result, at the same index.
+     */
+    @PutMapping(CUSTOMER_BATCH_PATH)
+    public List<BatchItemResult> upsertCustomers(@RequestBody List<CustomerDTO> customers) {
+        return customerBatchService.upsertCustomers(customers);
+    }
+
     @GetMapping(CUSTOMER_PATH)
-    public List<CustomerDTO> listCustomers() {
-        return customerService.listCustomers();
+    public Page<CustomerDTO> listCustomers(@RequestParam(required = false) Integer pageNumber,
+                                           @RequestParam(required = false) Integer pageSize) {
+        return customerService.listCustomers(pageNumber, pageSize);
+    }
+
+    /**
+     * Keyset (cursor) mode of the customer listing - picked whenever the {@code after} parameter is present,
+     * same as for beers.
+     */
+    @GetMapping(value = CUSTOMER_PATH, params = "after")
+    public CursorPage<CustomerDTO> listCustomersAfter(@RequestParam String after,
+                                                      @RequestParam(required = false) Integer pageSize) {
+        return customerService.listCustomersAfter(after, pageSize);
+    }
+
+    /**
+     * The customer's order history, newest first, paged with keyset (cursor) pagination like the listings.
+     */
+    @GetMapping(CUSTOMER_ORDERS_PATH)
+    public CursorPage<BeerOrderSummaryDTO> listCustomerOrders(@PathVariable("customerId") UUID customerId,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer pageSize) {
+        return beerOrderService.listCustomerOrders(customerId, after, pageSize).orElseThrow(NotFoundException::new);
+    }
+
+    /**
+     * The customer's order totals, read from its rollup row instead of aggregating its orders.
+     */
+    @GetMapping(CUSTOMER_ROLLUP_PATH)
+    public CustomerOrderRollupDTO getCustomerRollup(@PathVariable("customerId") UUID customerId) {
+        return customerOrderRollupService.getRollup(customerId).orElseThrow(NotFoundException::new);
+    }
+
+    /**
+     * Recomputes the order totals of all customers from their orders, chunk by chunk.
+     */
+    @PostMapping(CUSTOMER_ROLLUP_REBUILD_PATH)
+    public RollupRebuildResult rebuildCustomerRollups() {
+        return customerOrderRollupService.rebuild();
+    }
+
+    /**
+     * Streams all customers as NDJSON, written while they're read on an async thread.
+     */
+    @GetMapping(CUSTOMER_EXPORT_PATH)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        return ResponseEntity.ok()
+                .contentType(BeerController.NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"customers.ndjson\"")
+                .body(customerExportService::exportNdjson);
     }
 
     @GetMapping(CUSTOMER_PATH_ID)
-    public CustomerDTO getCustomerById(@PathVariable("customerId") UUID customerId) {
-        return customerService.getCustomerById(customerId).orElseThrow(NotFoundException::new);
+    public ResponseEntity<CustomerDTO> getCustomerById(@PathVariable("customerId") UUID customerId,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                       String ifNoneMatch) {
+
+        // conditional GET - compare against the current version, without loading the customer
+        if (ifNoneMatch != null) {
+            Integer version = customerService.getCustomerVersion(customerId).orElseThrow(NotFoundException::new);
+            String etag = ETags.strong(customerId, version);
+
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+
+        CustomerDTO customer = customerService.getCustomerById(customerId).orElseThrow(NotFoundException::new);
+
+        return ResponseEntity.ok().eTag(ETags.strong(customer.getId(), customer.getVersion())).body(customer);
     }
 
 }
@@ -0,0 +1,61 @@
+package guru.springframework.spring6restmvc.controller;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ETag;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Entity tags for conditional GETs.
+ * <p>
+ * Single resources get a strong tag made of their id and {@code @Version}, which changes with every update, so it
+ * can be checked against {@code If-None-Match} with a version-only query. Beers add their stock, which a striped
+ * stock change updates without touching the version, and are tagged from the same cached DTO that the body is
+ * served from. Pages get a weak tag hashed over what they contain - the id,
+ * version and stock of each row plus the paging numbers. It's weak because it's derived from the data behind the
+ * response, not from its exact bytes.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String strong(UUID id, Integer version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    static String strong(BeerDTO beer) {
+        return "\"" + beer.getId() + "-" + beer.getVersion() + "-" + beer.getQuantityOnHand() + "\"";
+    }
+
+    static String weak(Page<BeerDTO> page) {
+        StringBuilder contents = new StringBuilder()
+                .append(page.getNumber()).append('/')
+                .append(page.getSize()).append('/')
+                .append(page.getTotalElements());
+
+        for (BeerDTO beer : page.getContent()) {
+            contents.append(';').append(beer.getId()).append('-').append(beer.getVersion())
+                    .append('-').append(beer.getQuantityOnHand());
+        }
+
+        return "W/\"" + DigestUtils.md5DigestAsHex(contents.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * @return true if the {@code If-None-Match} header value contains the tag (or is "*"), using the weak
+     * comparison RFC 9110 requires for that header
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+
+        ETag current = ETag.create(etag);
+
+        return ETag.parse(ifNoneMatch).stream()
+                .anyMatch(candidate -> candidate.isWildcard() || candidate.compare(current, false));
+    }
+}
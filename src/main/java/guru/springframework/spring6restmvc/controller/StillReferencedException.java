@@ -0,0 +1,23 @@
+package guru.springframework.spring6restmvc.controller;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.sql.SQLException;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "Still referenced by other records")
+public class StillReferencedException extends RuntimeException {
+    public StillReferencedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * @return true if a foreign key still pointing at the row is what the violation is about - SQLSTATE 23503 on
+     * H2, MySQL reports the generic 23000 with error 1451 instead
+     */
+    public static boolean isForeignKeyViolation(DataIntegrityViolationException exception) {
+        return exception.getMostSpecificCause() instanceof SQLException sqlException
+                && ("23503".equals(sqlException.getSQLState()) || sqlException.getErrorCode() == 1451);
+    }
+}
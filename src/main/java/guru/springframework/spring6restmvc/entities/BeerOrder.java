@@ -2,6 +2,8 @@ package guru.springframework.spring6restmvc.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -12,13 +14,26 @@ import java.sql.Timestamp;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * All associations are lazy, so each read says what it needs through one of the entity graphs below - the shipment
+ * is fetched by join, the lines by join for a single order, or in batches for a page of orders (see BatchSize).
+ * The customer and the beers of the lines are left as proxies, their ids are known without loading them.
+ */
 @Getter
 @Setter
 @Builder
 @Entity
 @NoArgsConstructor
+@NamedEntityGraph(name = BeerOrder.WITH_SHIPMENT, attributeNodes = @NamedAttributeNode("beerOrderShipment"))
+@NamedEntityGraph(name = BeerOrder.WITH_SHIPMENT_AND_LINES, attributeNodes = {
+        @NamedAttributeNode("beerOrderShipment"),
+        @NamedAttributeNode("beerOrderLines")
+})
 public class BeerOrder {
 
+    public static final String WITH_SHIPMENT = "BeerOrder.withShipment";
+    public static final String WITH_SHIPMENT_AND_LINES = "BeerOrder.withShipmentAndLines";
+
     public BeerOrder(UUID id, Long version, Timestamp createdDate, Timestamp lastModifiedDate, String customerRef,
                      Customer customer, Set<BeerOrderLine> beerOrderLines, BeerOrderShipment beerOrderShipment) {
         this.id = id;
@@ -33,9 +48,9 @@ public class BeerOrder {
 
     @Id
     @GeneratedValue(generator = "UUID")
-    @UuidGenerator
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
-    @JdbcTypeCode(SqlTypes.CHAR)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
+    @Column(length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
+    @JdbcTypeCode(SqlTypes.BINARY)
     private UUID id;
 
     @Version
@@ -54,16 +69,22 @@ public class BeerOrder {
 
     private String customerRef;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Customer customer;
 
     // this setter helps maintain both sides of the relationship without flushing
     // it overrides the method that Project Lombok is providing
+    // the other side is only kept in sync if it's loaded already - adding to a lazy collection (or to an uninitialized
+    // customer proxy) would load every order the customer ever placed
     public void setCustomer(Customer customer) {
         this.customer = customer;
-        customer.getBeerOrders().add(this);
+
+        if (customer != null && Hibernate.isInitialized(customer) && Hibernate.isInitialized(customer.getBeerOrders()))
+            customer.getBeerOrders().add(this);
     }
 
+    // initializing the lines of one order of a page initializes those of the next orders of the page too
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "beerOrder")
     private Set<BeerOrderLine> beerOrderLines;
 
@@ -74,11 +95,13 @@ public class BeerOrder {
      * Cascade Type PERSIST propagates the persist operation from a parent to a child entity.
      * When we save the BeerOrder entity, the BeerOrderShipment entity will also get saved.
      */
-    @OneToOne(cascade = CascadeType.PERSIST)
+    @OneToOne(cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
     private BeerOrderShipment beerOrderShipment;
 
     public void setBeerOrderShipment(BeerOrderShipment beerOrderShipment) {
         this.beerOrderShipment = beerOrderShipment;
-        beerOrderShipment.setBeerOrder(this);
+
+        if (beerOrderShipment != null)
+            beerOrderShipment.setBeerOrder(this);
     }
 }
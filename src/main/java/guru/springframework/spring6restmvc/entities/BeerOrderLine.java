@@ -8,6 +8,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.annotations.UuidGenerator;
 import org.hibernate.type.SqlTypes;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.UUID;
 
@@ -21,9 +22,9 @@ public class BeerOrderLine {
 
     @Id
     @GeneratedValue(generator = "UUID")
-    @UuidGenerator
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
-    @JdbcTypeCode(SqlTypes.CHAR)
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class)
+    @Column(length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
+    @JdbcTypeCode(SqlTypes.BINARY)
     private UUID id;
 
     @Version
@@ -40,13 +41,17 @@ public class BeerOrderLine {
         return this.id == null;
     }
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private BeerOrder beerOrder;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Beer beer;
 
     private Integer orderQuantity = 0;
     private Integer quantityAllocated = 0;
 
+    // the beer's price when the order was placed - totals sum this, never the beer's current price
+    @Column(nullable = false)
+    private BigDecimal unitPrice;
+
 }
@@ -21,15 +21,15 @@ public class BeerOrderShipment {
 
     @Id
     @GeneratedValue(generator = "UUID")
-    @UuidGenerator // implementation of the @IdGeneratorType
-    @Column(length = 36, columnDefinition = "varchar(36)", updatable = false, nullable = false)
-    @JdbcTypeCode(SqlTypes.CHAR) // needed for MySQL - changes storing from binary to regular characters
+    @UuidGenerator(algorithm = TimeOrderedUuidGenerator.class) // version 7 - ids sort by creation time
+    @Column(length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
+    @JdbcTypeCode(SqlTypes.BINARY) // 16 bytes instead of 36 characters, here and in every foreign key
     private UUID id;
 
     @Version
     private Integer version;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     private BeerOrder beerOrder;
 
     private String trackingNumber;
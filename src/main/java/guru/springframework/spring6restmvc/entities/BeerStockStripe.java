@@ -0,0 +1,52 @@
+package guru.springframework.spring6restmvc.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * One share of a striped beer's stock. Concurrent stock changes of the beer go to different stripes, so they don't
+ * all queue up for a single row lock - see BeerInventoryServiceImpl.
+ */
+@Getter
+@Setter
+@Builder
+@Entity
+@IdClass(BeerStockStripe.Key.class)
+@AllArgsConstructor
+@NoArgsConstructor
+public class BeerStockStripe {
+
+    @Id
+    @Column(name = "beer_id", length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    private UUID beerId;
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private Integer stripe;
+
+    @Column(nullable = false)
+    private Integer quantityOnHand;
+
+    // only there for the foreign key - deleting a beer deletes its stripes in the database (also by bulk deletes)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "beer_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "beer_stock_stripe_beer_fk"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Beer beer;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID beerId;
+        private Integer stripe;
+    }
+}
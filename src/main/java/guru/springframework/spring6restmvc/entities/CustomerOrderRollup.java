@@ -0,0 +1,48 @@
+package guru.springframework.spring6restmvc.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * A customer's order totals, so reading them doesn't aggregate over beer_order and beer_order_line - see
+ * CustomerOrderRollupServiceImpl. {@code spend} is the sum of quantity times beer price over all order lines.
+ */
+@Getter
+@Setter
+@Builder
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+public class CustomerOrderRollup {
+
+    @Id
+    @Column(name = "customer_id", length = 16, columnDefinition = "binary(16)", updatable = false, nullable = false)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    private UUID customerId;
+
+    @Column(nullable = false)
+    private Long orderCount;
+
+    @Column(nullable = false)
+    private Long unitsBought;
+
+    @Column(precision = 38, scale = 2, nullable = false)
+    private BigDecimal spend;
+
+    private Timestamp lastOrderDate;
+
+    // only there for the foreign key - deleting a customer deletes its rollup in the database
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "customer_order_rollup_customer_fk"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Customer customer;
+}
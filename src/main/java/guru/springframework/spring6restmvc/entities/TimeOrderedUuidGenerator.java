@@ -0,0 +1,60 @@
+package guru.springframework.spring6restmvc.entities;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates version 7 UUIDs (RFC 9562): a 48-bit Unix timestamp in milliseconds, then a 12-bit counter and 62 random
+ * bits.
+ * <p>
+ * Stored as binary(16), these ids sort by creation time, so InnoDB appends new rows at the end of the clustered
+ * index instead of splitting pages all over it, as random (version 4) ids do. The counter keeps ids generated within
+ * the same millisecond in order too. If it overflows, or the clock goes back, the timestamp is moved forward by a
+ * millisecond instead, so the ids never go backwards within one JVM.
+ */
+public class TimeOrderedUuidGenerator implements UuidValueGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final int COUNTER_BITS = 12;
+    private static final int MAX_COUNTER = (1 << COUNTER_BITS) - 1;
+
+    private static long lastMillis;
+    private static int counter;
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    public static UUID next() {
+        long timestampAndCounter = nextTimestampAndCounter();
+
+        long mostSigBits = (timestampAndCounter >>> COUNTER_BITS) << 16 // 48-bit timestamp
+                | 0x7000L // version 7
+                | (timestampAndCounter & MAX_COUNTER);
+        long leastSigBits = RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L; // IETF variant
+
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static synchronized long nextTimestampAndCounter() {
+        long millis = System.currentTimeMillis();
+
+        if (millis > lastMillis) {
+            lastMillis = millis;
+            // start low enough in a new millisecond to leave room for the ids after it
+            counter = RANDOM.nextInt(MAX_COUNTER / 2);
+        } else if (counter < MAX_COUNTER) {
+            counter++;
+        } else {
+            lastMillis++;
+            counter = 0;
+        }
+
+        return lastMillis << COUNTER_BITS | counter;
+    }
+}
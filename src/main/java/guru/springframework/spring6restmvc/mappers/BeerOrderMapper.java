@@ -0,0 +1,27 @@
+package guru.springframework.spring6restmvc.mappers;
+
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineDTO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+@Mapper
+public interface BeerOrderMapper {
+
+    // the ids of the customer and beer proxies are known without loading them
+    @Mapping(target = "customerId", source = "customer.id")
+    @Mapping(target = "trackingNumber", source = "beerOrderShipment.trackingNumber")
+    BeerOrderDTO beerOrderToBeerOrderDto(BeerOrder beerOrder);
+
+    @Mapping(target = "beerId", source = "beer.id")
+    BeerOrderLineDTO beerOrderLineToBeerOrderLineDto(BeerOrderLine beerOrderLine);
+
+    default LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
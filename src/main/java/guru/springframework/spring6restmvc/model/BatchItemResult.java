@@ -0,0 +1,22 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a batch request, at the same {@code index} as the item in the request. {@code id} and
+ * {@code version} are the stored ones, and {@code error} tells why an item was not applied.
+ */
+@Builder
+@Data
+public class BatchItemResult {
+
+    private int index;
+    private BatchItemStatus status;
+    private UUID id;
+    private Integer version;
+    private String error;
+
+}
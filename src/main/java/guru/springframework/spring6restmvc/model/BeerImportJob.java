@@ -0,0 +1,27 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Status of a bulk CSV import. {@code progress} is the share of the uploaded file read so far (0-100), and
+ * {@code rowsImported} only counts rows whose chunk is already committed.
+ */
+@Builder
+@Data
+public class BeerImportJob {
+
+    private UUID id;
+    private String fileName;
+    private ImportStatus status;
+    private long rowsImported;
+    private int progress;
+    private double rowsPerSecond;
+    private LocalDateTime startedDate;
+    private LocalDateTime finishedDate;
+    private String error;
+
+}
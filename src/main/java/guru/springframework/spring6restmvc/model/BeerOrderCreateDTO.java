@@ -0,0 +1,34 @@
+package guru.springframework.spring6restmvc.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A new order - the customer and beers are referenced by id.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderCreateDTO {
+
+    @NotNull
+    private UUID customerId;
+
+    @Size(max = 255)
+    private String customerRef;
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid @NotNull BeerOrderLineCreateDTO> beerOrderLines;
+
+}
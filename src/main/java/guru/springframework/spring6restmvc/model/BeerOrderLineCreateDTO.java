@@ -0,0 +1,25 @@
+package guru.springframework.spring6restmvc.model;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderLineCreateDTO {
+
+    @NotNull
+    private UUID beerId;
+
+    @NotNull
+    @Min(1)
+    private Integer orderQuantity;
+
+}
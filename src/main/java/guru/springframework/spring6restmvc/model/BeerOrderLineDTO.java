@@ -0,0 +1,27 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderLineDTO {
+
+    private UUID id;
+    private Long version;
+    private UUID beerId;
+    private Integer orderQuantity;
+    private Integer quantityAllocated;
+    private BigDecimal unitPrice;
+    private LocalDateTime createdDate;
+    private LocalDateTime lastModifiedDate;
+
+}
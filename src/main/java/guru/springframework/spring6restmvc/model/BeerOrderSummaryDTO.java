@@ -0,0 +1,27 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An order as listed in a customer's order history - {@code total} is the sum of quantity times beer price over
+ * its lines.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerOrderSummaryDTO {
+
+    private UUID id;
+    private LocalDateTime createdDate;
+    private Long lineCount;
+    private BigDecimal total;
+
+}
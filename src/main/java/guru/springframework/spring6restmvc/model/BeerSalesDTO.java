@@ -0,0 +1,21 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerSalesDTO {
+
+    private UUID beerId;
+    private String beerName;
+    private BeerStyle beerStyle;
+    private long unitsSold;
+
+}
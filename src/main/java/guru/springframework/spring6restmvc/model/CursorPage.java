@@ -0,0 +1,21 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code next} is the token to pass as {@code after} to get the
+ * following page, and is null on the last page.
+ */
+@Builder
+@Data
+public class CursorPage<T> {
+
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String next;
+
+}
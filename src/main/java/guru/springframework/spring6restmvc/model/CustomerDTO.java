@@ -1,6 +1,7 @@
 package guru.springframework.spring6restmvc.model;
 
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
@@ -9,6 +10,7 @@ import java.util.UUID;
 
 @Builder
 @Data
+@AllArgsConstructor // public, so JPQL constructor expressions can select straight into it
 public class CustomerDTO {
 
     private UUID id;
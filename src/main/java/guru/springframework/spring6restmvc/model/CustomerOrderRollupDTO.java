@@ -0,0 +1,28 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A customer's order totals - {@code spend} is the sum of quantity times beer price over all its order lines, and
+ * {@code lastOrderDate} is null if it has no orders.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor // public, so JPQL constructor expressions can select straight into it
+public class CustomerOrderRollupDTO {
+
+    private UUID customerId;
+    private Long orderCount;
+    private Long unitsBought;
+    private BigDecimal spend;
+    private LocalDateTime lastOrderDate;
+
+}
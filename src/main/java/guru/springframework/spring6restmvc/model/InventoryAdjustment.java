@@ -0,0 +1,21 @@
+package guru.springframework.spring6restmvc.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A relative stock change - positive to add stock, negative to take it out.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryAdjustment {
+
+    @NotNull
+    private Integer delta;
+
+}
@@ -0,0 +1,58 @@
+package guru.springframework.spring6restmvc.model;
+
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last row a client has seen when paging with keyset (seek) pagination.
+ * <p>
+ * The cursor holds the sort key of that row plus its id (as a tie-breaker) and travels to the client as an
+ * opaque URL-safe token, so clients never build it themselves. A null key (a row whose sort column is null) is kept
+ * apart from every string, the text "null" included.
+ */
+@Data
+@AllArgsConstructor
+public class KeysetCursor {
+
+    private String key;
+    private UUID id;
+
+    public String encode() {
+        // the UUID never contains ':', so the first one always separates the id from the key - a null key has none
+        String raw = key == null ? id.toString() : id.toString() + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or null for an empty token (meaning "start from the first row")
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if the token was not produced by
+     *                                                                            {@link #encode()}
+     */
+    public static KeysetCursor decode(String token) {
+        if (!StringUtils.hasText(token))
+            return null;
+
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + token, e);
+        }
+
+        int separator = raw.indexOf(':');
+
+        try {
+            return separator < 0
+                    ? new KeysetCursor(null, UUID.fromString(raw))
+                    : new KeysetCursor(raw.substring(separator + 1), UUID.fromString(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk purge - {@code deleted} rows matched the filter and were removed, {@code retained} rows matched
+ * it too but are still referenced (e.g. by order lines) and were kept.
+ */
+@Builder
+@Data
+public class PurgeResult {
+
+    private long deleted;
+    private long retained;
+
+}
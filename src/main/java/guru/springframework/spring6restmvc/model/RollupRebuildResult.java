@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a rollup rebuild - {@code customers} were processed, {@code rollups} of them have orders and got their
+ * totals written.
+ */
+@Builder
+@Data
+public class RollupRebuildResult {
+
+    private long customers;
+    private long rollups;
+
+}
@@ -0,0 +1,30 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Units sold per beer over the order lines created from {@code from} through {@code to} - the best sellers overall
+ * and per style, most units first. {@code generatedDate} tells how old a cached report is.
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesReportDTO {
+
+    private LocalDate from;
+    private LocalDate to;
+    private long linesScanned;
+    private long unitsSold;
+    private List<BeerSalesDTO> topBeers;
+    private List<StyleSalesDTO> styles;
+    private LocalDateTime generatedDate;
+
+}
@@ -0,0 +1,20 @@
+package guru.springframework.spring6restmvc.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StyleSalesDTO {
+
+    private BeerStyle beerStyle;
+    private long unitsSold;
+    private List<BeerSalesDTO> topBeers;
+
+}
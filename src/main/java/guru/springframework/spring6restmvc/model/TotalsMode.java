@@ -0,0 +1,13 @@
+package guru.springframework.spring6restmvc.model;
+
+/**
+ * How a paged listing works out its total number of elements.
+ * <ul>
+ *     <li>EXACT - runs a count query with every page (a {@code Page})</li>
+ *     <li>NONE - no count at all, only tells if there is a next page (a {@code Slice})</li>
+ *     <li>ESTIMATE - uses a count cached for a short time per filter combination</li>
+ * </ul>
+ */
+public enum TotalsMode {
+    EXACT, NONE, ESTIMATE
+}
@@ -0,0 +1,43 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+public interface BeerOrderLineRepository extends JpaRepository<BeerOrderLine, UUID> {
+
+    // only what the sales report needs of a line, without loading it
+    interface LineSalesView {
+        UUID getId();
+
+        Timestamp getCreatedDate();
+
+        UUID getBeerId();
+
+        Integer getOrderQuantity();
+    }
+
+    String LINE_SALES = "select l.id as id, l.createdDate as createdDate, l.beer.id as beerId, " +
+            "l.orderQuantity as orderQuantity from BeerOrderLine l where l.createdDate < :to ";
+
+    // lines created in [from, to) in (createdDate, id) order - first chunk, then the one after the given line. Each
+    // chunk is a short range read of the (created_date, id) index, so a report never holds a long-running scan open,
+    // and never reads lines outside of its range
+    @Query(LINE_SALES + "and l.createdDate >= :from order by l.createdDate, l.id")
+    List<LineSalesView> findFirstSales(@Param("from") Timestamp from, @Param("to") Timestamp to, Limit limit);
+
+    // the newest line of [from, to) - together with the oldest one, the span a report splits into slices
+    @Query(LINE_SALES + "and l.createdDate >= :from order by l.createdDate desc, l.id desc")
+    List<LineSalesView> findLastSales(@Param("from") Timestamp from, @Param("to") Timestamp to, Limit limit);
+
+    @Query(LINE_SALES + "and (l.createdDate > :createdDate or (l.createdDate = :createdDate and l.id > :id)) " +
+            "order by l.createdDate, l.id")
+    List<LineSalesView> findSalesAfter(@Param("to") Timestamp to, @Param("createdDate") Timestamp createdDate,
+                                       @Param("id") UUID id, Limit limit);
+}
@@ -1,9 +1,49 @@
 package guru.springframework.spring6restmvc.repositories;
 
 import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface BeerOrderRepository extends JpaRepository<BeerOrder, UUID> {
+
+    // a single order with its shipment and lines, in one select
+    @EntityGraph(BeerOrder.WITH_SHIPMENT_AND_LINES)
+    Optional<BeerOrder> findWithLinesById(UUID id);
+
+    // fetching the lines by join would page in memory, so pages only join the shipment and batch-fetch the lines
+    @EntityGraph(BeerOrder.WITH_SHIPMENT)
+    Page<BeerOrder> findAllBy(Pageable pageable);
+
+    @EntityGraph(BeerOrder.WITH_SHIPMENT)
+    Page<BeerOrder> findAllByCustomerId(UUID customerId, Pageable pageable);
+
+    // the line count and total are correlated subqueries rather than a join with group by, so they're only
+    // computed for the orders of the page, read in order from beer_order_customer_created_id_idx
+    String ORDER_SUMMARY = "select new guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO(o.id, " +
+            "cast(o.createdDate as LocalDateTime), " +
+            "(select count(l) from BeerOrderLine l where l.beerOrder = o), " +
+            "(select coalesce(sum(l.orderQuantity * l.unitPrice), 0) from BeerOrderLine l where l.beerOrder = o)) " +
+            "from BeerOrder o ";
+
+    // keyset pagination of a customer's orders - newest first, then everything sorted before (createdDate, id)
+    @Query(ORDER_SUMMARY + "where o.customer.id = :customerId order by o.createdDate desc, o.id desc")
+    List<BeerOrderSummaryDTO> findFirstOrderSummaries(@Param("customerId") UUID customerId, Limit limit);
+
+    @Query(ORDER_SUMMARY + "where o.customer.id = :customerId " +
+            "and (o.createdDate < :createdDate or (o.createdDate = :createdDate and o.id < :id)) " +
+            "order by o.createdDate desc, o.id desc")
+    List<BeerOrderSummaryDTO> findOrderSummariesAfter(@Param("customerId") UUID customerId,
+                                                      @Param("createdDate") Timestamp createdDate,
+                                                      @Param("id") UUID id, Limit limit);
 }
@@ -0,0 +1,39 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read paths that select beer columns straight into {@link BeerDTO}s (JPQL constructor expressions), so listing
+ * beers doesn't create managed entities, lazy collection proxies and dirty-checking snapshots just to copy them
+ * into DTOs. With {@code showInventory = false} the quantity_on_hand column isn't selected at all.
+ * <p>
+ * The name pattern and the style are optional filters - null means "don't filter on it".
+ */
+public interface BeerProjectionRepository {
+
+    /**
+     * Offset-based slice, ordered by the sort of the pageable.
+     */
+    Slice<BeerDTO> findBeerDtos(String beerNamePattern, BeerStyle beerStyle, boolean showInventory,
+                                Pageable pageable);
+
+    /**
+     * Keyset slice ordered by (beerName, id), starting right after the cursor (or at the first beer without one).
+     */
+    Slice<BeerDTO> findBeerDtosAfter(String beerNamePattern, BeerStyle beerStyle, KeysetCursor after,
+                                     boolean showInventory, int limit);
+
+    /**
+     * Beers with the given ids, in no particular order.
+     */
+    List<BeerDTO> findBeerDtosByIds(Collection<UUID> ids, boolean showInventory);
+
+}
@@ -0,0 +1,150 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerStockStripe;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Spring Data picks this class up as the implementation of the {@link BeerProjectionRepository} fragment
+ * of {@link BeerRepository} (by the "Impl" postfix).
+ */
+class BeerProjectionRepositoryImpl implements BeerProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<BeerDTO> findBeerDtos(String beerNamePattern, BeerStyle beerStyle, boolean showInventory,
+                                       Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDTO> query = cb.createQuery(BeerDTO.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        query.select(construct(cb, query, beer, showInventory))
+                .where(filters(cb, beer, beerNamePattern, beerStyle).toArray(Predicate[]::new))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), beer, cb));
+
+        // one extra row tells if there is a next slice, without a count query
+        List<BeerDTO> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        return toSlice(content, pageable);
+    }
+
+    @Override
+    public Slice<BeerDTO> findBeerDtosAfter(String beerNamePattern, BeerStyle beerStyle, KeysetCursor after,
+                                            boolean showInventory, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDTO> query = cb.createQuery(BeerDTO.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        List<Predicate> predicates = filters(cb, beer, beerNamePattern, beerStyle);
+
+        if (after != null) {
+            // beerName > :name or (beerName = :name and id > :id)
+            predicates.add(cb.or(
+                    cb.greaterThan(beer.get("beerName"), after.getKey()),
+                    cb.and(
+                            cb.equal(beer.get("beerName"), after.getKey()),
+                            cb.greaterThan(beer.<UUID>get("id"), after.getId()))));
+        }
+
+        query.select(construct(cb, query, beer, showInventory))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.asc(beer.get("beerName")), cb.asc(beer.get("id")));
+
+        List<BeerDTO> content = entityManager.createQuery(query)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        return toSlice(content, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<BeerDTO> findBeerDtosByIds(Collection<UUID> ids, boolean showInventory) {
+        if (ids.isEmpty())
+            return List.of();
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDTO> query = cb.createQuery(BeerDTO.class);
+        Root<Beer> beer = query.from(Beer.class);
+
+        query.select(construct(cb, query, beer, showInventory))
+                .where(beer.get("id").in(ids));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    // * the selections have to follow the order of the BeerDTO all-args constructor
+    private static CompoundSelection<BeerDTO> construct(CriteriaBuilder cb, CriteriaQuery<BeerDTO> query,
+                                                        Root<Beer> beer, boolean showInventory) {
+        return cb.construct(BeerDTO.class,
+                beer.get("id"),
+                beer.get("version"),
+                beer.get("beerName"),
+                beer.get("beerStyle"),
+                beer.get("upc"),
+                showInventory ? quantityOnHand(cb, query, beer) : cb.nullLiteral(Integer.class),
+                beer.get("price"),
+                beer.get("createdDate"),
+                beer.get("updatedDate"));
+    }
+
+    // same as BeerRepository.QUANTITY_ON_HAND
+    private static Expression<Integer> quantityOnHand(CriteriaBuilder cb, CriteriaQuery<BeerDTO> query,
+                                                      Root<Beer> beer) {
+        Subquery<Integer> stripes = query.subquery(Integer.class);
+        Root<BeerStockStripe> stripe = stripes.from(BeerStockStripe.class);
+        stripes.select(cb.sum(stripe.get("quantityOnHand")))
+                .where(cb.equal(stripe.get("beerId"), beer.get("id")));
+
+        Expression<Integer> quantityOnHand = beer.get("quantityOnHand");
+
+        return cb.<Integer>selectCase()
+                .when(cb.gt(beer.get("stockStripes"), 0),
+                        cb.sum(cb.coalesce(quantityOnHand, 0), cb.coalesce(stripes, 0)))
+                .otherwise(quantityOnHand);
+    }
+
+    private static List<Predicate> filters(CriteriaBuilder cb, Root<Beer> beer, String beerNamePattern,
+                                           BeerStyle beerStyle) {
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (beerNamePattern != null)
+            predicates.add(cb.like(cb.upper(beer.get("beerName")), cb.upper(cb.literal(beerNamePattern))));
+
+        if (beerStyle != null)
+            predicates.add(cb.equal(beer.get("beerStyle"), beerStyle));
+
+        return predicates;
+    }
+
+    private static Slice<BeerDTO> toSlice(List<BeerDTO> content, Pageable pageable) {
+        boolean hasNext = content.size() > pageable.getPageSize();
+
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+}
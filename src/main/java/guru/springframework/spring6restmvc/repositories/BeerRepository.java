@@ -1,14 +1,49 @@
 package guru.springframework.spring6restmvc.repositories;
 
 import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface BeerRepository extends JpaRepository<Beer, UUID> {
+public interface BeerRepository extends JpaRepository<Beer, UUID>, BeerProjectionRepository,
+        BeerUpdateRepository {
+
+    // stock of a beer as the clients see it - only striped beers pay for summing their stripes
+    String QUANTITY_ON_HAND = "case when b.stockStripes > 0 then coalesce(b.quantityOnHand, 0) + " +
+            "coalesce((select sum(s.quantityOnHand) from BeerStockStripe s where s.beerId = b.id), 0) " +
+            "else b.quantityOnHand end";
+
+    // only what the in-memory beer name index needs, without loading whole entities
+    interface BeerNameView {
+        UUID getId();
+
+        String getBeerName();
+
+        BeerStyle getBeerStyle();
+    }
+
+    List<BeerNameView> findAllNamesBy();
+
+    List<BeerNameView> findNamesByIdIn(Collection<UUID> ids);
 
     Page<Beer> findAllByBeerNameIsLikeIgnoreCase(String beerName, Pageable pageable);
 
@@ -16,4 +51,73 @@ public interface BeerRepository extends JpaRepository<Beer, UUID> {
 
     Page<Beer> findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle(String beerName, BeerStyle beerStyle, Pageable pageable);
 
+    long countByBeerNameIsLikeIgnoreCase(String beerName);
+
+    long countByBeerStyle(BeerStyle beerStyle);
+
+    long countByBeerNameIsLikeIgnoreCaseAndBeerStyle(String beerName, BeerStyle beerStyle);
+
+    @Query("select new guru.springframework.spring6restmvc.model.BeerDTO(b.id, b.version, b.beerName, b.beerStyle, " +
+            "b.upc, " + QUANTITY_ON_HAND + ", b.price, b.createdDate, b.updatedDate) from Beer b where b.id = :id")
+    Optional<BeerDTO> findBeerDtoById(@Param("id") UUID id);
+
+    // the prices of the beers with the ids, without loading the beers - ids without a beer are left out
+    interface BeerPriceView {
+        UUID getId();
+
+        BigDecimal getPrice();
+    }
+
+    List<BeerPriceView> findPricesByIdIn(Collection<UUID> ids);
+
+    @Query("select b.version from Beer b where b.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    // whole catalog as unmanaged DTOs, read in chunks of the fetch size - must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new guru.springframework.spring6restmvc.model.BeerDTO(b.id, b.version, b.beerName, b.beerStyle, " +
+            "b.upc, " + QUANTITY_ON_HAND + ", b.price, b.createdDate, b.updatedDate) from Beer b order by b.id")
+    Stream<BeerDTO> streamAllBeerDtos();
+
+    // empty if there's no beer with the id, 0 if it isn't striped
+    @Query("select coalesce(b.stockStripes, 0) from Beer b where b.id = :id")
+    Optional<Integer> findStockStripesById(@Param("id") UUID id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Beer b where b.id = :id")
+    Optional<Beer> findForUpdateById(@Param("id") UUID id);
+
+    // relative stock change, applied atomically by the database - returns 0 if no row has the id, or if the stock
+    // would go negative. A bulk update bypasses @Version and @UpdateTimestamp, so both are set here
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Beer b set b.quantityOnHand = coalesce(b.quantityOnHand, 0) + :delta, " +
+            "b.version = b.version + 1, b.updatedDate = local datetime " +
+            "where b.id = :id and coalesce(b.quantityOnHand, 0) + :delta >= 0")
+    int adjustQuantityOnHand(@Param("id") UUID id, @Param("delta") int delta);
+
+    // single-statement delete (Hibernate clears the beer_category rows first) - returns 0 if no row has the id
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Beer b where b.id = :id")
+    int deleteBeerById(@Param("id") UUID id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Beer b where b.id in :ids")
+    int deleteAllBeersById(@Param("ids") Collection<UUID> ids);
+
+    // purge candidates - beers of the style with at most the given stock, that no order line refers to. Unordered,
+    // as an order by id would sort all beers of the style for every chunk
+    @Query("select b.id from Beer b where b.beerStyle = :beerStyle " +
+            "and coalesce(" + QUANTITY_ON_HAND + ", 0) <= :maxQuantityOnHand " +
+            "and not exists (select 1 from BeerOrderLine l where l.beer = b)")
+    List<UUID> findPurgeableIds(@Param("beerStyle") BeerStyle beerStyle,
+                                @Param("maxQuantityOnHand") int maxQuantityOnHand, Limit limit);
+
+    @Query("select count(b) from Beer b where b.beerStyle = :beerStyle " +
+            "and coalesce(" + QUANTITY_ON_HAND + ", 0) <= :maxQuantityOnHand")
+    long countPurgeMatches(@Param("beerStyle") BeerStyle beerStyle,
+                           @Param("maxQuantityOnHand") int maxQuantityOnHand);
+
 }
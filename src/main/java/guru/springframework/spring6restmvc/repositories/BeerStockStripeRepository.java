@@ -0,0 +1,35 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.BeerStockStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface BeerStockStripeRepository extends JpaRepository<BeerStockStripe, BeerStockStripe.Key> {
+
+    // relative change of a single stripe, guarded like BeerRepository.adjustQuantityOnHand - only locks that stripe
+    @Transactional
+    @Modifying
+    @Query("update BeerStockStripe s set s.quantityOnHand = s.quantityOnHand + :delta " +
+            "where s.beerId = :beerId and s.stripe = :stripe and s.quantityOnHand + :delta >= 0")
+    int adjustStripe(@Param("beerId") UUID beerId, @Param("stripe") int stripe, @Param("delta") int delta);
+
+    // all stripes of the beer, locked in stripe order. Callers lock the beer row first and must not hold a stripe
+    // already, so they queue on the beer row instead of deadlocking (see BeerInventoryServiceImpl)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<BeerStockStripe> findAllByBeerIdOrderByStripe(UUID beerId);
+
+    // an absolute stock write replaces whatever the stripes held
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BeerStockStripe s set s.quantityOnHand = 0 where s.beerId in :beerIds")
+    int clearStripes(@Param("beerIds") Collection<UUID> beerIds);
+}
@@ -0,0 +1,27 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+
+import java.util.UUID;
+
+/**
+ * Write path that changes a beer with a single {@code UPDATE ... WHERE id = ? [AND version = ?]}, without loading
+ * the entity first. The version is incremented and updatedDate set in the same statement.
+ */
+public interface BeerUpdateRepository {
+
+    /**
+     * Sets beerName, beerStyle, upc, price and quantityOnHand to the values of {@code changes}. With
+     * {@code skipEmpty}, blank and null values are left out of the statement and keep their column as it is. Setting
+     * quantityOnHand also empties the stripes of a striped beer, so it's the whole stock again.
+     * <p>
+     * Pending changes are flushed before, and the updated beer is detached after, so it isn't left managed with its
+     * old state - the next read loads it again. Everything else the caller's transaction has loaded stays managed, so
+     * a larger unit of work can go on with its entities. Stock stripes it has loaded itself are not refreshed.
+     *
+     * @param version the version the beer must have, or null to update whatever version it has
+     * @return the number of updated rows - 0 if there's no such beer, or it has another version
+     */
+    int updateBeer(UUID id, Integer version, BeerDTO changes, boolean skipEmpty);
+
+}
@@ -0,0 +1,68 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Spring Data picks this class up as the implementation of the {@link BeerUpdateRepository} fragment
+ * of {@link BeerRepository} (by the "Impl" postfix).
+ */
+class BeerUpdateRepositoryImpl implements BeerUpdateRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updateBeer(UUID id, Integer version, BeerDTO changes, boolean skipEmpty) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Beer> update = cb.createCriteriaUpdate(Beer.class);
+        Root<Beer> beer = update.from(Beer.class);
+
+        if (!skipEmpty || StringUtils.hasText(changes.getBeerName()))
+            update.set(beer.<String>get("beerName"), changes.getBeerName());
+        if (!skipEmpty || changes.getBeerStyle() != null)
+            update.set(beer.get("beerStyle"), changes.getBeerStyle());
+        if (!skipEmpty || StringUtils.hasText(changes.getUpc()))
+            update.set(beer.<String>get("upc"), changes.getUpc());
+        if (!skipEmpty || changes.getPrice() != null)
+            update.set(beer.get("price"), changes.getPrice());
+        if (!skipEmpty || changes.getQuantityOnHand() != null)
+            update.set(beer.<Integer>get("quantityOnHand"), changes.getQuantityOnHand());
+
+        // a bulk update bypasses @Version and @UpdateTimestamp, so both are set here
+        update.set(beer.<Integer>get("version"), cb.sum(beer.get("version"), 1));
+        update.set(beer.<LocalDateTime>get("updatedDate"), LocalDateTime.now());
+
+        Predicate byId = cb.equal(beer.get("id"), id);
+        update.where(version == null ? byId : cb.and(byId, cb.equal(beer.get("version"), version)));
+
+        entityManager.flush();
+        int updated = entityManager.createQuery(update).executeUpdate();
+
+        // an absolute stock replaces whatever the stripes of a striped beer held
+        if (updated > 0 && (!skipEmpty || changes.getQuantityOnHand() != null)) {
+            entityManager.createQuery("update BeerStockStripe s set s.quantityOnHand = 0 where s.beerId = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+
+        // only the updated beer is stale - the rest the caller's transaction has loaded stays managed. getReference
+        // returns the managed instance if there is one, and an unloaded proxy otherwise, neither of which reads the row
+        if (updated > 0)
+            entityManager.detach(entityManager.getReference(Beer.class, id));
+
+        return updated;
+    }
+}
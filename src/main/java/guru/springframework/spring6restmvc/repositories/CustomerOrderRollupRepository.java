@@ -0,0 +1,50 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.CustomerOrderRollup;
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CustomerOrderRollupRepository extends JpaRepository<CustomerOrderRollup, UUID> {
+
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO(r.customerId, r.orderCount, " +
+            "r.unitsBought, r.spend, cast(r.lastOrderDate as LocalDateTime)) " +
+            "from CustomerOrderRollup r where r.customerId = :customerId")
+    Optional<CustomerOrderRollupDTO> findRollupDtoByCustomerId(@Param("customerId") UUID customerId);
+
+    // adds one order to the totals, applied atomically by the database - returns 0 if the customer has no rollup yet
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update CustomerOrderRollup r set r.orderCount = r.orderCount + 1, " +
+            "r.unitsBought = r.unitsBought + :units, r.spend = r.spend + :spend, " +
+            "r.lastOrderDate = case when r.lastOrderDate is null or r.lastOrderDate < :orderDate " +
+            "then :orderDate else r.lastOrderDate end " +
+            "where r.customerId = :customerId")
+    int addOrder(@Param("customerId") UUID customerId, @Param("units") long units, @Param("spend") BigDecimal spend,
+                 @Param("orderDate") Timestamp orderDate);
+
+    // (re)computes the rollups of the customers from their orders - customers without orders get none. Spend sums
+    // the prices the lines were ordered at, like addOrder does, so a rebuild reproduces the incremental totals
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("insert into CustomerOrderRollup (customerId, orderCount, unitsBought, spend, lastOrderDate) " +
+            "select o.customer.id, count(distinct o.id), coalesce(sum(l.orderQuantity), 0), " +
+            "coalesce(sum(l.orderQuantity * l.unitPrice), 0), max(o.createdDate) " +
+            "from BeerOrder o left join o.beerOrderLines l " +
+            "where o.customer.id in :customerIds group by o.customer.id")
+    int insertRollups(@Param("customerIds") Collection<UUID> customerIds);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CustomerOrderRollup r where r.customerId in :customerIds")
+    int deleteRollups(@Param("customerIds") Collection<UUID> customerIds);
+}
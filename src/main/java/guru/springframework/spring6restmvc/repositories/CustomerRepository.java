@@ -1,10 +1,85 @@
 package guru.springframework.spring6restmvc.repositories;
 
 import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface CustomerRepository extends JpaRepository<Customer, UUID> {
 
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Integer> findVersionById(@Param("id") UUID id);
+
+    // takes the customer's row lock without loading it - empty if there is no customer with the id. Order placement
+    // takes it before inserting, which serializes the creation of the order rollup (see BeerOrderServiceJPA)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Customer c where c.id = :id")
+    Optional<UUID> lockIdById(@Param("id") UUID id);
+
+    // chunks of customer ids in id order, locked - first chunk, then the one after the given id
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Customer c order by c.id")
+    List<UUID> findFirstIdsForUpdate(Limit limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Customer c where c.id > :id order by c.id")
+    List<UUID> findIdsForUpdateAfter(@Param("id") UUID id, Limit limit);
+
+    // single-statement rename, optionally only from the given version - returns 0 if no row has the id (and version)
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Customer c set c.name = :name, c.version = c.version + 1, c.updatedDate = local datetime " +
+            "where c.id = :id and (:version is null or c.version = :version)")
+    int updateName(@Param("id") UUID id, @Param("version") Integer version, @Param("name") String name);
+
+    // single-statement delete - returns 0 if no row has the id
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Customer c where c.id = :id")
+    int deleteCustomerById(@Param("id") UUID id);
+
+    // listing pages as unmanaged DTOs - a Slice reads one extra row instead of running a count query
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, " +
+            "c.createdDate, c.updatedDate) from Customer c")
+    Slice<CustomerDTO> findCustomerDtos(Pageable pageable);
+
+    // keyset pagination - first page, then everything sorted after (name, id), both walking customer_name_id_idx.
+    // Names may be null, which MySQL and H2 both sort (and index) before all others
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, " +
+            "c.createdDate, c.updatedDate) from Customer c order by c.name, c.id")
+    List<CustomerDTO> findFirstCustomerDtos(Limit limit);
+
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, " +
+            "c.createdDate, c.updatedDate) from Customer c " +
+            "where c.name > :name or (c.name = :name and c.id > :id) order by c.name, c.id")
+    List<CustomerDTO> findCustomerDtosAfter(@Param("name") String name, @Param("id") UUID id, Limit limit);
+
+    // after a customer without a name - the rest of the nameless ones, then all with a name
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, " +
+            "c.createdDate, c.updatedDate) from Customer c " +
+            "where (c.name is null and c.id > :id) or c.name is not null order by c.name, c.id")
+    List<CustomerDTO> findCustomerDtosAfterNullName(@Param("id") UUID id, Limit limit);
+
+    // all customers as unmanaged DTOs, read in chunks of the fetch size - must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new guru.springframework.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, " +
+            "c.createdDate, c.updatedDate) from Customer c order by c.id")
+    Stream<CustomerDTO> streamAllCustomerDtos();
+
 }
@@ -0,0 +1,26 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.PurgeResult;
+
+import java.util.List;
+
+public interface BeerBatchService {
+
+    /**
+     * Creates the beers without an id and updates the ones with an id, as far as they're valid.
+     *
+     * @return one result per beer, in the same order
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if there are more beers than a single
+     *                                                                            batch may hold
+     */
+    List<BatchItemResult> saveBeers(List<BeerDTO> beers);
+
+    /**
+     * Deletes the beers of the style with at most {@code maxQuantityOnHand} in stock (none counts as 0). Beers still
+     * on an order are kept, and counted as retained.
+     */
+    PurgeResult purgeBeers(BeerStyle beerStyle, int maxQuantityOnHand);
+}
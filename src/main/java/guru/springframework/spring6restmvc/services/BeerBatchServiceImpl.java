@@ -0,0 +1,199 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.StillReferencedException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.mappers.BeerMapper;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.PurgeResult;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerStockStripeRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a batch of beer creates and updates in chunks of {@code beer.batch.chunk-size} beers, each in its own
+ * transaction.
+ * <p>
+ * Invalid beers are reported up front by {@link ChunkedBatch}. Per chunk, the beers to update are loaded with a single
+ * IN query, checked against the version the client sent (if any) and changed in place. Hibernate then writes all
+ * inserts and updates of the chunk as JDBC batches on commit.
+ * <p>
+ * Purges work the same way: each chunk selects up to {@code beer.batch.chunk-size} matching ids (through the
+ * (beer_style, ...) index) and deletes them with a single IN statement, which Hibernate precedes with one for their
+ * beer_category rows. Beers an order line refers to are never selected, so the order history stays intact.
+ */
+@Slf4j
+@Service
+public class BeerBatchServiceImpl implements BeerBatchService {
+
+    private final BeerRepository beerRepository;
+    private final BeerStockStripeRepository beerStockStripeRepository;
+    private final BeerMapper beerMapper;
+    private final BeerNameIndex beerNameIndex;
+    private final BeerCache beerCache;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ChunkedBatch<BeerDTO> batch;
+
+    public BeerBatchServiceImpl(BeerRepository beerRepository,
+                                BeerStockStripeRepository beerStockStripeRepository,
+                                BeerMapper beerMapper,
+                                BeerNameIndex beerNameIndex,
+                                BeerCache beerCache,
+                                Validator validator,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${beer.batch.chunk-size:500}") int chunkSize,
+                                @Value("${beer.batch.max-size:10000}") int maxSize) {
+        this.beerRepository = beerRepository;
+        this.beerStockStripeRepository = beerStockStripeRepository;
+        this.beerMapper = beerMapper;
+        this.beerNameIndex = beerNameIndex;
+        this.beerCache = beerCache;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.batch = new ChunkedBatch<>("beers", BeerDTO::getId, this::validate, transactionTemplate, chunkSize,
+                maxSize);
+    }
+
+    @Override
+    public List<BatchItemResult> saveBeers(List<BeerDTO> beers) {
+        return batch.save(beers, (chunk, results) -> saveChunk(beers, chunk, results));
+    }
+
+    @Override
+    public PurgeResult purgeBeers(BeerStyle beerStyle, int maxQuantityOnHand) {
+        long deleted = 0;
+
+        while (true) {
+            Integer purged = transactionTemplate.execute(status -> {
+                List<UUID> ids = beerRepository.findPurgeableIds(beerStyle, maxQuantityOnHand, Limit.of(chunkSize));
+
+                if (ids.isEmpty())
+                    return 0;
+
+                int count;
+                try {
+                    count = beerRepository.deleteAllBeersById(ids);
+                } catch (DataIntegrityViolationException e) {
+                    // a beer ordered since it was picked
+                    if (!StillReferencedException.isForeignKeyViolation(e))
+                        throw e;
+
+                    throw new StillReferencedException("A purged " + beerStyle + " beer was ordered meanwhile", e);
+                }
+
+                beerNameIndex.removeAll(ids);
+                beerCache.evictAll(ids);
+                return count;
+            });
+
+            if (purged == null || purged == 0)
+                break;
+
+            deleted += purged;
+        }
+
+        long retained = beerRepository.countPurgeMatches(beerStyle, maxQuantityOnHand);
+        log.debug("Purged {} {} beers, {} retained", deleted, beerStyle, retained);
+
+        return PurgeResult.builder().deleted(deleted).retained(retained).build();
+    }
+
+    private void saveChunk(List<BeerDTO> beers, List<Integer> chunk, BatchItemResult[] results) {
+        Set<UUID> ids = chunk.stream()
+                .map(index -> beers.get(index).getId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<UUID, Beer> existingBeers = beerRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+
+        Map<Integer, Beer> created = new LinkedHashMap<>();
+        Map<Integer, Beer> updated = new LinkedHashMap<>();
+
+        for (int index : chunk) {
+            BeerDTO beer = beers.get(index);
+
+            if (beer.getId() == null) {
+                Beer newBeer = beerMapper.beerDtoToBeer(beer);
+                newBeer.setVersion(null);
+                created.put(index, newBeer);
+                continue;
+            }
+
+            Beer existingBeer = existingBeers.get(beer.getId());
+
+            if (existingBeer == null) {
+                results[index] = ChunkedBatch.notFound(index, beer.getId());
+                continue;
+            }
+
+            BatchItemResult conflict = ChunkedBatch.staleVersion(index, beer.getId(), beer.getVersion(),
+                    existingBeer.getVersion());
+
+            if (conflict != null) {
+                results[index] = conflict;
+            } else {
+                existingBeer.setBeerName(beer.getBeerName());
+                existingBeer.setBeerStyle(beer.getBeerStyle());
+                existingBeer.setUpc(beer.getUpc());
+                existingBeer.setPrice(beer.getPrice());
+                existingBeer.setQuantityOnHand(beer.getQuantityOnHand());
+                updated.put(index, existingBeer);
+            }
+        }
+
+        beerRepository.saveAll(created.values());
+        // sends the batched inserts and updates now, so the results carry the final ids and versions
+        beerRepository.flush();
+
+        created.forEach((index, beer) -> results[index] = applied(index, BatchItemStatus.CREATED, beer));
+        updated.forEach((index, beer) -> {
+            results[index] = applied(index, BatchItemStatus.UPDATED, beer);
+            beerCache.refresh(beerMapper.beerToBeerDto(beer));
+        });
+
+        // the stock sent is the whole stock, also of striped beers
+        List<UUID> striped = updated.values().stream()
+                .filter(beer -> beer.getStockStripes() != null && beer.getStockStripes() > 0)
+                .map(Beer::getId)
+                .toList();
+
+        if (!striped.isEmpty())
+            beerStockStripeRepository.clearStripes(striped);
+
+        beerNameIndex.putAll(created.values());
+        beerNameIndex.putAll(updated.values());
+    }
+
+    private String validate(BeerDTO beer) {
+        Set<ConstraintViolation<BeerDTO>> violations = validator.validate(beer);
+
+        if (violations.isEmpty())
+            return null;
+
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static BatchItemResult applied(int index, BatchItemStatus status, Beer beer) {
+        return ChunkedBatch.applied(index, status, beer.getId(), beer.getVersion());
+    }
+}
@@ -0,0 +1,87 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of beers by id, in front of {@link BeerService#getBeerById(UUID)}.
+ * <p>
+ * Entries are evicted by size and by age (so changes made by other instances show up within the TTL). Writes made
+ * through this instance refresh or evict the entry once their transaction commits, and a refresh only replaces the
+ * cached beer if its {@code @Version} is at least as new - a slow reader that loaded an older row can never
+ * overwrite a newer one. Hit, miss and eviction counters are published as the "beers" cache metrics.
+ */
+@Component
+public class BeerCache {
+
+    private final Cache<UUID, BeerDTO> cache;
+
+    public BeerCache(@Value("${beer.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${beer.cache.ttl:10m}") Duration ttl,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "beers");
+    }
+
+    /**
+     * @return the cached beer, or the one found by the loader (which is then cached - missing beers are not)
+     */
+    public Optional<BeerDTO> get(UUID beerId, Function<UUID, Optional<BeerDTO>> loader) {
+        // the load runs atomically for the key, so a concurrent refresh waits for it and then wins by version
+        BeerDTO beer = cache.get(beerId, id -> loader.apply(id).orElse(null));
+
+        return Optional.ofNullable(beer).map(BeerCache::copy);
+    }
+
+    public void refresh(BeerDTO beer) {
+        if (beer.getVersion() == null) {
+            evict(beer.getId()); // can't tell if it's newer than the cached one
+            return;
+        }
+
+        BeerDTO fresh = copy(beer);
+
+        AfterCommit.run(() -> cache.asMap().merge(fresh.getId(), fresh,
+                (cached, updated) -> isNewer(cached, updated) ? cached : updated));
+    }
+
+    public void evict(UUID beerId) {
+        AfterCommit.run(() -> cache.invalidate(beerId));
+    }
+
+    public void evictAll(Collection<UUID> beerIds) {
+        List<UUID> evicted = List.copyOf(beerIds);
+        AfterCommit.run(() -> cache.invalidateAll(evicted));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static boolean isNewer(BeerDTO cached, BeerDTO updated) {
+        return cached.getVersion() != null && cached.getVersion() > updated.getVersion();
+    }
+
+    // cached beers are shared between requests, so callers never get to touch the cached instance itself
+    private static BeerDTO copy(BeerDTO beer) {
+        return beer.toBuilder().build();
+    }
+}
@@ -1,10 +1,31 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.entities.Beer;
 import guru.springframework.spring6restmvc.model.BeerCSVRecord;
 
 import java.io.File;
+import java.io.Reader;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BeerCsvService {
     List<BeerCSVRecord> convertCSV(File file);
+
+    /**
+     * Lazy variant of {@link #convertCSV(File)} - records are parsed one at a time while iterating, so the whole
+     * file is never held in memory.
+     */
+    Iterable<BeerCSVRecord> readCSV(Reader reader);
+
+    /**
+     * Parses the file and hands each record to the consumer, without collecting them. With {@code parallel},
+     * implementations may parse parts of the file concurrently - the consumer is then called from several threads,
+     * and not in file order.
+     */
+    void parseCSV(File file, boolean parallel, Consumer<BeerCSVRecord> consumer);
+
+    /**
+     * Maps a CSV record onto a new (unsaved) beer, including the mapping of the CSV styles onto {@code BeerStyle}.
+     */
+    Beer toBeer(BeerCSVRecord beerCSVRecord);
 }
@@ -1,13 +1,21 @@
 package guru.springframework.spring6restmvc.services;
 
 import com.opencsv.bean.CsvToBeanBuilder;
+import guru.springframework.spring6restmvc.entities.Beer;
 import guru.springframework.spring6restmvc.model.BeerCSVRecord;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class BeerCsvServiceImpl implements BeerCsvService {
@@ -23,4 +31,47 @@ public class BeerCsvServiceImpl implements BeerCsvService {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public Iterable<BeerCSVRecord> readCSV(Reader reader) {
+        // CsvToBean iterates the input lazily, unlike parse() which reads every record into a list
+        return new CsvToBeanBuilder<BeerCSVRecord>(reader)
+                .withType(BeerCSVRecord.class)
+                .build();
+    }
+
+    @Override
+    public void parseCSV(File csvFile, boolean parallel, Consumer<BeerCSVRecord> consumer) {
+        // OpenCSV reads the file front to back, so this is always sequential
+        try (Reader reader = new FileReader(csvFile)) {
+            readCSV(reader).forEach(consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Beer toBeer(BeerCSVRecord beerCSVRecord) {
+        BeerStyle beerStyle = switch (beerCSVRecord.getStyle()) {
+            case "American Pale Lager" -> BeerStyle.LAGER;
+            case "American Pale Ale (APA)", "American Black Ale", "Belgian Dark Ale", "American Blonde Ale" ->
+                    BeerStyle.ALE;
+            case "American IPA", "American Double / Imperial IPA", "Belgian IPA" -> BeerStyle.IPA;
+            case "American Porter" -> BeerStyle.PORTER;
+            case "Oatmeal Stout", "American Stout" -> BeerStyle.STOUT;
+            case "Saison / Farmhouse Ale" -> BeerStyle.SAISON;
+            case "Fruit / Vegetable Beer", "Winter Warmer", "Berliner Weissbier" -> BeerStyle.WHEAT;
+            case "English Pale Ale" -> BeerStyle.PALE_ALE;
+            default -> BeerStyle.PILSNER;
+        };
+
+        return Beer.builder()
+                // apachecommons' StringUtils.abbreviate(string, maxWidth) limits max width of the string
+                .beerName(StringUtils.abbreviate(beerCSVRecord.getBeer(), 50))
+                .beerStyle(beerStyle)
+                .price(BigDecimal.TEN) // hardcoded since the price is missing in CSV data
+                .upc(beerCSVRecord.getRow().toString())
+                .quantityOnHand(beerCSVRecord.getCount())
+                .build();
+    }
 }
@@ -0,0 +1,17 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface BeerExportService {
+
+    /**
+     * Writes the whole beer catalog as newline-delimited JSON (one BeerDTO per line).
+     */
+    void exportNdjson(OutputStream outputStream) throws IOException;
+
+    /**
+     * Writes the whole beer catalog as CSV, with a header row.
+     */
+    void exportCsv(OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,93 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.opencsv.CSVWriter;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Streams the beer catalog straight from the database into the response.
+ * <p>
+ * Rows are read as unmanaged DTOs through a forward-only result set with a fetch size, so neither the persistence
+ * context nor the JDBC driver holds more than one chunk at a time, and each row is written out as soon as it's read.
+ * Heap use stays the same no matter how big the table is. The connection is only held while the export runs -
+ * the transaction starts and ends with the method call.
+ */
+@Service
+@RequiredArgsConstructor
+public class BeerExportServiceImpl implements BeerExportService {
+
+    private static final String[] CSV_HEADER = {"id", "version", "beerName", "beerStyle", "upc", "quantityOnHand", "price",
+            "createdDate", "updatedDate"};
+
+    private final BeerRepository beerRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream outputStream) throws IOException {
+        // flushing after every row would send a tiny chunk per beer, the response buffer flushes on its own
+        ObjectWriter writer = objectMapper.writerFor(BeerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (Stream<BeerDTO> beers = beerRepository.streamAllBeerDtos()) {
+            // not closed on purpose - closing would close the response stream too
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            // each value ends its own line, without the default space in front of the next one
+            generator.setRootValueSeparator(null);
+
+            for (Iterator<BeerDTO> iterator = beers.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
+
+            generator.flush();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportCsv(OutputStream outputStream) throws IOException {
+        // not closed on purpose - closing would close the response stream too
+        CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        csvWriter.writeNext(CSV_HEADER, false);
+
+        try (Stream<BeerDTO> beers = beerRepository.streamAllBeerDtos()) {
+            beers.forEach(beer -> csvWriter.writeNext(toCsvRow(beer), false));
+        }
+
+        csvWriter.flush();
+
+        if (csvWriter.checkError())
+            throw new UncheckedIOException(new IOException("Writing the CSV export failed"));
+    }
+
+    private static String[] toCsvRow(BeerDTO beer) {
+        return new String[]{
+                Objects.toString(beer.getId(), ""),
+                Objects.toString(beer.getVersion(), ""),
+                beer.getBeerName(),
+                Objects.toString(beer.getBeerStyle(), ""),
+                beer.getUpc(),
+                Objects.toString(beer.getQuantityOnHand(), ""),
+                Objects.toString(beer.getPrice(), ""),
+                Objects.toString(beer.getCreatedDate(), ""),
+                Objects.toString(beer.getUpdatedDate(), "")
+        };
+    }
+}
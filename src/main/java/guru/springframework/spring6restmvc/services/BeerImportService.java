@@ -0,0 +1,22 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerImportJob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BeerImportService {
+
+    /**
+     * Copies the CSV to a temporary file and imports it in the background.
+     *
+     * @return the new job, to be polled through {@link #getImportJob(UUID)}
+     * @throws guru.springframework.spring6restmvc.controller.ServiceUnavailableException if the task executor
+     *                                                                                    rejects the job
+     */
+    BeerImportJob startImport(InputStream csv, String fileName) throws IOException;
+
+    Optional<BeerImportJob> getImportJob(UUID jobId);
+}
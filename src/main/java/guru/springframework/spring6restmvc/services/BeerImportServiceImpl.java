@@ -0,0 +1,203 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.controller.ServiceUnavailableException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerCSVRecord;
+import guru.springframework.spring6restmvc.model.BeerImportJob;
+import guru.springframework.spring6restmvc.model.ImportStatus;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bulk CSV import, running in the background.
+ * <p>
+ * The upload is parsed lazily and saved in chunks of {@code beer.import.chunk-size} rows, each in its own
+ * transaction. Within a chunk Hibernate sends the inserts as JDBC batches ({@code hibernate.jdbc.batch_size}), which
+ * the MySQL driver rewrites into multi-row inserts. So memory use is bounded by the chunk size, and a failure only
+ * rolls back the chunk being saved - the chunks committed before it stay imported, as reported by the job.
+ * <p>
+ * Jobs are only kept in memory, for a day after they were last looked at.
+ */
+@Slf4j
+@Service
+public class BeerImportServiceImpl implements BeerImportService {
+
+    private final BeerRepository beerRepository;
+    private final BeerCsvService beerCsvService;
+    private final BeerNameIndex beerNameIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor taskExecutor;
+    private final int chunkSize;
+
+    private final Cache<UUID, ImportProgress> jobs = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(Duration.ofDays(1))
+            .build();
+
+    public BeerImportServiceImpl(BeerRepository beerRepository,
+                                 BeerCsvService beerCsvService,
+                                 BeerNameIndex beerNameIndex,
+                                 TransactionTemplate transactionTemplate,
+                                 @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                                 TaskExecutor taskExecutor,
+                                 @Value("${beer.import.chunk-size:1000}") int chunkSize) {
+        this.beerRepository = beerRepository;
+        this.beerCsvService = beerCsvService;
+        this.beerNameIndex = beerNameIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.taskExecutor = taskExecutor;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public BeerImportJob startImport(InputStream csv, String fileName) throws IOException {
+        // the upload is gone once the request ends, so keep a copy for the background job
+        Path file = Files.createTempFile("beer-import-", ".csv");
+        ImportProgress progress = new ImportProgress(UUID.randomUUID(), fileName);
+
+        // until the job runs, deleting the copy is up to this thread
+        try {
+            Files.copy(csv, file, StandardCopyOption.REPLACE_EXISTING);
+            jobs.put(progress.id, progress);
+            taskExecutor.execute(() -> runImport(progress, file));
+        } catch (TaskRejectedException e) {
+            jobs.invalidate(progress.id);
+            delete(file);
+            throw new ServiceUnavailableException("No capacity to run import " + fileName + " right now", e);
+        } catch (IOException | RuntimeException e) {
+            jobs.invalidate(progress.id);
+            delete(file);
+            throw e;
+        }
+
+        return progress.toJob();
+    }
+
+    @Override
+    public Optional<BeerImportJob> getImportJob(UUID jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(ImportProgress::toJob);
+    }
+
+    private void runImport(ImportProgress progress, Path file) {
+        try (FileInputStream inputStream = new FileInputStream(file.toFile());
+             Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+
+            FileChannel channel = inputStream.getChannel();
+            long fileSize = Math.max(channel.size(), 1);
+
+            List<Beer> chunk = new ArrayList<>(chunkSize);
+
+            for (BeerCSVRecord beerCSVRecord : beerCsvService.readCSV(reader)) {
+                chunk.add(beerCsvService.toBeer(beerCSVRecord));
+
+                if (chunk.size() == chunkSize) {
+                    saveChunk(chunk);
+                    // the reader buffers ahead a bit, close enough for a progress bar
+                    progress.chunkSaved(chunk.size(), (int) (100 * channel.position() / fileSize));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                saveChunk(chunk);
+                progress.chunkSaved(chunk.size(), 100);
+            }
+
+            progress.finish(ImportStatus.COMPLETED, null);
+            log.debug("Beer import {} completed - {} rows", progress.id, progress.rowsImported);
+        } catch (Exception e) {
+            log.warn("Beer import {} failed after {} rows", progress.id, progress.rowsImported, e);
+            progress.finish(ImportStatus.FAILED, e.getMessage());
+        } finally {
+            delete(file);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
+    private void saveChunk(List<Beer> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Beer> savedBeers = beerRepository.saveAll(chunk);
+            beerNameIndex.putAll(savedBeers);
+        });
+    }
+
+    // written by the import thread only, read by any request polling the job
+    private static class ImportProgress {
+
+        private final UUID id;
+        private final String fileName;
+        private final LocalDateTime startedDate = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+
+        private volatile ImportStatus status = ImportStatus.RUNNING;
+        private volatile long rowsImported;
+        private volatile int progress;
+        private volatile long elapsedNanos;
+        private volatile LocalDateTime finishedDate;
+        private volatile String error;
+
+        ImportProgress(UUID id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+
+        void chunkSaved(int rows, int progress) {
+            this.rowsImported += rows;
+            this.progress = progress;
+            this.elapsedNanos = System.nanoTime() - startedNanos;
+        }
+
+        void finish(ImportStatus status, String error) {
+            this.elapsedNanos = System.nanoTime() - startedNanos;
+            this.finishedDate = LocalDateTime.now();
+            this.error = error;
+            this.status = status;
+        }
+
+        BeerImportJob toJob() {
+            long rows = rowsImported;
+            long nanos = elapsedNanos;
+
+            return BeerImportJob.builder()
+                    .id(id)
+                    .fileName(fileName)
+                    .status(status)
+                    .rowsImported(rows)
+                    .progress(progress)
+                    .rowsPerSecond(nanos == 0 ? 0 : rows * 1_000_000_000d / nanos)
+                    .startedDate(startedDate)
+                    .finishedDate(finishedDate)
+                    .error(error)
+                    .build();
+        }
+    }
+}
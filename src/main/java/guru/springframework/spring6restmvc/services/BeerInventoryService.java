@@ -0,0 +1,29 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BeerInventoryService {
+
+    /**
+     * Adds the delta (negative to take stock out) to the beer's {@code quantityOnHand}, never going below 0.
+     *
+     * @return the beer after the change, or empty if there's no beer with the id
+     * @throws guru.springframework.spring6restmvc.controller.InsufficientStockException if the stock would go
+     *                                                                                     negative
+     */
+    Optional<BeerDTO> adjustQuantityOnHand(UUID beerId, int delta);
+
+    /**
+     * Spreads the beer's stock over the given number of stripes, so concurrent changes of it don't all wait for the
+     * same row lock - for the few beers changed many times a second. 0 moves the stock back into the beer row.
+     *
+     * @return false if there's no beer with the id
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if the number of stripes is negative
+     *                                                                            or above
+     *                                                                            {@code beer.inventory.max-stripes}
+     */
+    boolean stripeQuantityOnHand(UUID beerId, int stripes);
+}
@@ -0,0 +1,261 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.controller.InsufficientStockException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerStockStripe;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerStockStripeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock changes as relative deltas, so concurrent scanners add up instead of overwriting each other.
+ * <p>
+ * Each change is a single {@code quantity_on_hand = quantity_on_hand + ?} update, guarded so the stock can't go
+ * negative - the database applies it atomically under the row lock, no read-modify-write and no version check
+ * involved. It still bumps the {@code @Version}, so full PUTs and PATCHes based on the old stock fail as usual.
+ * <p>
+ * Under heavy contention the database may still give up on a row lock (lock wait timeout, deadlock victim). Such
+ * conflicts are retried up to {@code beer.inventory.max-attempts} times, with an exponential, jittered backoff
+ * starting at {@code beer.inventory.backoff}. Outcomes and conflicts are counted as {@code beer.inventory.adjustments}
+ * and {@code beer.inventory.conflicts}, the ratio of the two being the conflict rate.
+ * <p>
+ * A single row still serializes every change of a beer on its lock. For the few beers changed many times a second,
+ * the stock can be striped instead: spread over N BeerStockStripe rows, the beer row keeping the rest (0 unless an
+ * absolute write put the stock back there). A change then goes to a random stripe, so up to N of them run at once,
+ * and neither the beer row nor its version is touched. When the picked stripe hasn't enough stock for a decrement,
+ * the other stripes are tried in turn, and only if none of them has enough on its own is everything locked, in a
+ * fixed order, summed and spread evenly again. Reads add the stripes up (see BeerRepository.QUANTITY_ON_HAND).
+ * <p>
+ * Each stripe is tried in a transaction of its own, and the rebalance gets another one. A tried stripe stays locked
+ * until commit even when its guard refused the change (InnoDB keeps the record locks of an update's scan under
+ * REPEATABLE READ), so trying them all in one transaction would collect their locks in a random order and deadlock
+ * against a rebalance or another decrement. This way a transaction holds at most one stripe, or the beer row and
+ * then the stripes in order.
+ */
+@Slf4j
+@Service
+public class BeerInventoryServiceImpl implements BeerInventoryService {
+
+    private final BeerRepository beerRepository;
+    private final BeerStockStripeRepository beerStockStripeRepository;
+    private final BeerCache beerCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final int maxStripes;
+
+    private final Counter applied;
+    private final Counter insufficient;
+    private final Counter notFound;
+    private final Counter exhausted;
+    private final Counter conflicts;
+
+    public BeerInventoryServiceImpl(BeerRepository beerRepository,
+                                    BeerStockStripeRepository beerStockStripeRepository,
+                                    BeerCache beerCache,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${beer.inventory.max-attempts:5}") int maxAttempts,
+                                    @Value("${beer.inventory.backoff:5ms}") Duration backoff,
+                                    @Value("${beer.inventory.max-stripes:64}") int maxStripes) {
+        this.beerRepository = beerRepository;
+        this.beerStockStripeRepository = beerStockStripeRepository;
+        this.beerCache = beerCache;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxStripes = maxStripes;
+
+        this.applied = adjustments(meterRegistry, "applied");
+        this.insufficient = adjustments(meterRegistry, "insufficient");
+        this.notFound = adjustments(meterRegistry, "not_found");
+        this.exhausted = adjustments(meterRegistry, "exhausted");
+        this.conflicts = Counter.builder("beer.inventory.conflicts")
+                .description("Stock adjustments retried after a lock conflict")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<BeerDTO> adjustQuantityOnHand(UUID beerId, int delta) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Optional<BeerDTO> beer = adjust(beerId, delta);
+                (beer.isPresent() ? applied : notFound).increment();
+                return beer;
+            } catch (InsufficientStockException e) {
+                insufficient.increment();
+                throw e;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+
+                conflicts.increment();
+                log.debug("Stock adjustment of beer {} conflicted, attempt {} of {}", beerId, attempt, maxAttempts);
+                pause(attempt);
+            }
+        }
+    }
+
+    @Override
+    public boolean stripeQuantityOnHand(UUID beerId, int stripes) {
+        if (stripes < 0 || stripes > maxStripes)
+            throw new BadRequestException("stripes must be between 0 and " + maxStripes + ", got " + stripes);
+
+        Boolean found = transactionTemplate.execute(status -> {
+            Optional<Beer> beer = beerRepository.findForUpdateById(beerId);
+
+            if (beer.isEmpty())
+                return false;
+
+            List<BeerStockStripe> lockedStripes = beerStockStripeRepository.findAllByBeerIdOrderByStripe(beerId);
+
+            if (stripes > 0 || !lockedStripes.isEmpty())
+                spread(beer.get(), lockedStripes, total(beer.get(), lockedStripes), stripes);
+
+            beerCache.evict(beerId);
+            return true;
+        });
+
+        return Boolean.TRUE.equals(found);
+    }
+
+    private Optional<BeerDTO> adjust(UUID beerId, int delta) {
+        Optional<Integer> stripes = beerRepository.findStockStripesById(beerId);
+
+        if (stripes.isEmpty())
+            return Optional.empty();
+
+        if (stripes.get() > 0)
+            return adjustStriped(beerId, stripes.get(), delta);
+
+        return transactionTemplate.execute(status -> adjustRow(beerId, delta));
+    }
+
+    private Optional<BeerDTO> adjustRow(UUID beerId, int delta) {
+        if (beerRepository.adjustQuantityOnHand(beerId, delta) == 0) {
+            if (beerRepository.findVersionById(beerId).isEmpty())
+                return Optional.empty();
+
+            throw new InsufficientStockException("Not enough stock of beer " + beerId + " to take out " + -delta);
+        }
+
+        // the row is locked by the update until commit, so this is exactly the state it leaves
+        Optional<BeerDTO> beer = beerRepository.findBeerDtoById(beerId);
+        beer.ifPresent(beerCache::refresh);
+        return beer;
+    }
+
+    // not in a transaction - every stripe update commits (or releases its lock) on its own
+    private Optional<BeerDTO> adjustStriped(UUID beerId, int stripes, int delta) {
+        if (!adjustStripe(beerId, stripes, delta)
+                && !Boolean.TRUE.equals(transactionTemplate.execute(status -> rebalance(beerId, delta))))
+            return Optional.empty();
+
+        // the version stays the same, so a refresh couldn't tell which of two concurrent reads is newer
+        beerCache.evict(beerId);
+        return beerRepository.findBeerDtoById(beerId);
+    }
+
+    private boolean adjustStripe(UUID beerId, int stripes, int delta) {
+        int first = ThreadLocalRandom.current().nextInt(stripes);
+        // any stripe can take stock in, but taking it out may need a stripe that still has enough
+        int candidates = delta >= 0 ? 1 : stripes;
+
+        for (int i = 0; i < candidates; i++) {
+            if (beerStockStripeRepository.adjustStripe(beerId, (first + i) % stripes, delta) > 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    // no single stripe had enough (or the stripes changed meanwhile) - take the whole stock at once
+    private boolean rebalance(UUID beerId, int delta) {
+        Optional<Beer> beer = beerRepository.findForUpdateById(beerId);
+
+        if (beer.isEmpty())
+            return false;
+
+        List<BeerStockStripe> lockedStripes = beerStockStripeRepository.findAllByBeerIdOrderByStripe(beerId);
+        int total = total(beer.get(), lockedStripes);
+
+        if (total + delta < 0)
+            throw new InsufficientStockException("Not enough stock of beer " + beerId + " to take out " + -delta);
+
+        Integer stripes = beer.get().getStockStripes();
+        spread(beer.get(), lockedStripes, total + delta, stripes == null ? 0 : stripes);
+        return true;
+    }
+
+    // sets the stripes to an even share of the stock each (the first ones get the remainder), or the beer row to
+    // all of it for 0 stripes
+    private void spread(Beer beer, List<BeerStockStripe> lockedStripes, int total, int stripes) {
+        Map<Integer, BeerStockStripe> unused = new HashMap<>();
+        lockedStripes.forEach(stripe -> unused.put(stripe.getStripe(), stripe));
+
+        for (int index = 0; index < stripes; index++) {
+            BeerStockStripe stripe = unused.remove(index);
+            int share = total / stripes + (index < total % stripes ? 1 : 0);
+
+            if (stripe == null) {
+                beerStockStripeRepository.save(BeerStockStripe.builder()
+                        .beerId(beer.getId()).stripe(index).quantityOnHand(share).build());
+            } else {
+                stripe.setQuantityOnHand(share);
+            }
+        }
+
+        beerStockStripeRepository.deleteAll(unused.values());
+
+        beer.setQuantityOnHand(stripes > 0 ? 0 : total);
+        beer.setStockStripes(stripes > 0 ? stripes : null);
+    }
+
+    private static int total(Beer beer, List<BeerStockStripe> lockedStripes) {
+        int total = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+
+        for (BeerStockStripe stripe : lockedStripes) {
+            total += stripe.getQuantityOnHand();
+        }
+
+        return total;
+    }
+
+    private void pause(int attempt) {
+        long base = backoff.toNanos() << Math.min(attempt - 1, 16);
+        // full jitter, so retrying writers don't collide again in lockstep
+        long nanos = ThreadLocalRandom.current().nextLong(base + 1);
+
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a stock adjustment", e);
+        }
+    }
+
+    private static Counter adjustments(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("beer.inventory.adjustments")
+                .description("Stock adjustments, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
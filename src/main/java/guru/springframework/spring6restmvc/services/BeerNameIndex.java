@@ -0,0 +1,304 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.bootstrap.BootstrapCompletedEvent;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index over {@code Beer.beerName}, used for substring ("%term%") searches.
+ * <p>
+ * A LIKE with a leading wildcard can't use any B-tree index, so the database would scan the whole beer table for
+ * every search. Instead, every name is folded to its search form - lower case, accents stripped - and split into its
+ * 3-character grams, and each gram points to the ids of the beers containing it. A search only looks at the beers
+ * sharing the rarest gram of the term, so the cost tracks the number of candidates and not the size of the table.
+ * The matching ids are then fetched by primary key.
+ * <p>
+ * The index is built once the bootstrap data is loaded (see BootstrapCompletedEvent) and kept current by the
+ * write paths of {@link BeerServiceJPA}, once their transaction commits. Until it's built, or for terms it can't
+ * answer (shorter than a gram or containing LIKE wildcards), {@link #canSearch(String)} returns false and callers
+ * use the database query instead.
+ * <p>
+ * Both paths must find and order the same beers, so the index follows MySQL's default collation (utf8mb4_0900_ai_ci,
+ * ignoring case and accents): terms are folded like the names, so "cafe" finds "Café" as the LIKE does, and results
+ * come in the order of the (beer_name, id) index - names through a collation key kept per beer, ids like the bytes of
+ * their binary(16) column, unsigned. The folding covers case and accents only, not the collation's other
+ * equivalences (such as "ß" and "ss").
+ * <p>
+ * The index lives in this instance's memory: only changes made through this instance's services reach it. Writes by
+ * other instances or by SQL run directly against the database are missed until the next restart rebuilds it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BeerNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final Collator NAME_COLLATION = nameCollation();
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Comparator<IndexedBeer> BY_NAME_AND_ID =
+            Comparator.comparing(IndexedBeer::nameKey).thenComparing(IndexedBeer::id, BeerNameIndex::compareIds);
+
+    private final BeerRepository beerRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<UUID>> postings = new HashMap<>();
+    private final Map<UUID, IndexedBeer> beers = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    private record IndexedBeer(UUID id, String beerName, String searchName, CollationKey nameKey,
+                               BeerStyle beerStyle) {
+    }
+
+    /**
+     * Reads all names under the write lock - a change committed meanwhile waits for it and is applied on top,
+     * instead of being wiped out by an older snapshot. Searches wait as well, so it's only run at startup.
+     */
+    @EventListener(BootstrapCompletedEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            List<BeerRepository.BeerNameView> names = beerRepository.findAllNamesBy();
+
+            postings.clear();
+            beers.clear();
+            names.forEach(view -> add(view.getId(), view.getBeerName(), view.getBeerStyle()));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("Beer name index built - {} beers, {} grams in {} ms",
+                beers.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean canSearch(String term) {
+        return ready && term != null && searchForm(term).length() >= GRAM_LENGTH
+                && term.indexOf('%') < 0 && term.indexOf('_') < 0;
+    }
+
+    /**
+     * @return ids of the beers whose name contains the term (ignoring case and accents), optionally of the given
+     * style, sorted by (beerName, id)
+     */
+    public List<UUID> search(String term, BeerStyle beerStyle) {
+        return search(term, beerStyle, null);
+    }
+
+    /**
+     * Same as {@link #search(String, BeerStyle)}, but only returns the beers sorted after the given cursor.
+     */
+    public List<UUID> search(String term, BeerStyle beerStyle, KeysetCursor after) {
+        String searchTerm = searchForm(term);
+        IndexedBeer afterBeer = after == null ? null
+                : new IndexedBeer(after.getId(), after.getKey(), null, nameKey(after.getKey()), null);
+
+        List<IndexedBeer> matches = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Set<UUID> candidates = rarestPosting(searchTerm);
+
+            for (UUID id : candidates) {
+                IndexedBeer beer = beers.get(id);
+
+                // the grams only narrow the candidates down, the name still has to contain the whole term
+                if (beer.searchName().contains(searchTerm)
+                        && (beerStyle == null || beerStyle == beer.beerStyle())
+                        && (afterBeer == null || BY_NAME_AND_ID.compare(beer, afterBeer) > 0)) {
+                    matches.add(beer);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(BY_NAME_AND_ID);
+
+        return matches.stream().map(IndexedBeer::id).toList();
+    }
+
+    public void put(Beer beer) {
+        UUID id = beer.getId();
+        String beerName = beer.getBeerName();
+        BeerStyle beerStyle = beer.getBeerStyle();
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeEntry(id);
+                add(id, beerName, beerStyle);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #put(Beer)} for a beer changed without loading it - a null name or style keeps the indexed one.
+     */
+    public void update(UUID id, String beerName, BeerStyle beerStyle) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                IndexedBeer current = beers.get(id);
+                String newName = beerName != null ? beerName : current == null ? null : current.beerName();
+                BeerStyle newStyle = beerStyle != null ? beerStyle : current == null ? null : current.beerStyle();
+
+                // not indexed yet and only partly known - the next rebuild picks it up
+                if (newName == null)
+                    return;
+
+                removeEntry(id);
+                add(id, newName, newStyle);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #put(Beer)} for many beers at once, under a single write lock.
+     */
+    public void putAll(Collection<Beer> saved) {
+        List<IndexedBeer> entries = saved.stream()
+                .map(beer -> new IndexedBeer(beer.getId(), beer.getBeerName(), null, null, beer.getBeerStyle()))
+                .toList();
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                entries.forEach(entry -> {
+                    removeEntry(entry.id());
+                    add(entry.id(), entry.beerName(), entry.beerStyle());
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(UUID beerId) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeEntry(beerId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #remove(UUID)} for many beers at once, under a single write lock.
+     */
+    public void removeAll(Collection<UUID> beerIds) {
+        List<UUID> removed = List.copyOf(beerIds);
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removed.forEach(this::removeEntry);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private Set<UUID> rarestPosting(String searchTerm) {
+        Set<UUID> rarest = null;
+
+        for (String gram : grams(searchTerm)) {
+            Set<UUID> posting = postings.get(gram);
+
+            if (posting == null)
+                return Collections.emptySet(); // no beer has this gram, so no beer can contain the term
+
+            if (rarest == null || posting.size() < rarest.size())
+                rarest = posting;
+        }
+
+        return rarest;
+    }
+
+    private void add(UUID id, String beerName, BeerStyle beerStyle) {
+        String searchName = searchForm(beerName);
+        beers.put(id, new IndexedBeer(id, beerName, searchName, nameKey(beerName), beerStyle));
+
+        for (String gram : grams(searchName)) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void removeEntry(UUID id) {
+        IndexedBeer removed = beers.remove(id);
+
+        if (removed == null)
+            return;
+
+        for (String gram : grams(removed.searchName())) {
+            Set<UUID> posting = postings.get(gram);
+            posting.remove(id);
+
+            if (posting.isEmpty())
+                postings.remove(gram);
+        }
+    }
+
+    // decomposed, so an accented letter becomes its base letter and a combining mark, and the marks dropped
+    private static String searchForm(String text) {
+        return COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static Collator nameCollation() {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY); // base letters only, like an _ai_ci collation
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+        return collator;
+    }
+
+    // Collator isn't thread-safe, the keys are
+    private static CollationKey nameKey(String beerName) {
+        synchronized (NAME_COLLATION) {
+            return NAME_COLLATION.getCollationKey(beerName);
+        }
+    }
+
+    // UUID.compareTo compares signed longs, binary(16) columns compare unsigned bytes
+    static int compareIds(UUID a, UUID b) {
+        int byMostSignificant = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+
+        return byMostSignificant != 0 ? byMostSignificant
+                : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    private static Set<String> grams(String searchText) {
+        Set<String> grams = new HashSet<>();
+
+        for (int i = 0; i + GRAM_LENGTH <= searchText.length(); i++) {
+            grams.add(searchText.substring(i, i + GRAM_LENGTH));
+        }
+
+        return grams;
+    }
+}
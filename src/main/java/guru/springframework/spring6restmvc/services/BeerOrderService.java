@@ -0,0 +1,37 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import org.springframework.data.domain.Page;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BeerOrderService {
+
+    /**
+     * Saves the order with its lines and an empty shipment.
+     *
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if the customer or any of the beers
+     *                                                                            doesn't exist
+     */
+    BeerOrderDTO placeOrder(BeerOrderCreateDTO beerOrder);
+
+    Optional<BeerOrderDTO> getOrderById(UUID id);
+
+    /**
+     * Newest orders first, of one customer or of all of them if {@code customerId} is null.
+     */
+    Page<BeerOrderDTO> listOrders(UUID customerId, Integer pageNumber, Integer pageSize);
+
+    /**
+     * A customer's orders, newest first, one keyset page at a time - {@code after} is the {@code next} token of the
+     * previous page, or null for the first one.
+     *
+     * @return empty if the customer doesn't exist
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if {@code after} is not a valid token
+     */
+    Optional<CursorPage<BeerOrderSummaryDTO>> listCustomerOrders(UUID customerId, String after, Integer pageSize);
+}
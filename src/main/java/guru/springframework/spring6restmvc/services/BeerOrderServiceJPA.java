@@ -0,0 +1,204 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import guru.springframework.spring6restmvc.entities.BeerOrderShipment;
+import guru.springframework.spring6restmvc.mappers.BeerOrderMapper;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import guru.springframework.spring6restmvc.repositories.BeerOrderLineRepository;
+import guru.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Order placement in a constant number of statements, no matter how many orders the customer already has.
+ * <p>
+ * The customer and beers are only checked for existence - one locking lookup by primary key, and one IN query for
+ * the prices of all the beers - and then referenced through proxies, so neither is loaded, and the customer's order
+ * collection is never touched (see BeerOrder#setCustomer). Ids are generated in memory, so the order, its shipment and its lines are
+ * written in one flush, the lines as a single JDBC batch. The customer's order totals are updated in the same
+ * transaction (see CustomerOrderRollupServiceImpl), from the prices read along with the existence check.
+ * <p>
+ * The customer's row lock is taken before anything is written. Inserting the order takes a shared lock on the
+ * customer row anyway (for the foreign key check), and two placements holding it would deadlock as soon as one of
+ * them needs the exclusive lock to create the rollup. Taken first, the lock makes a customer's placements queue up
+ * instead - which they did already, on the rollup row.
+ * <p>
+ * Reads go through the entity graphs of BeerOrder, so an order loads in one select whatever its number of lines,
+ * and a page of orders in a select for the orders and one for the lines of up to 100 of them. A customer's order
+ * history is read as summaries, in a single select per page, without loading any order.
+ */
+@Service
+@RequiredArgsConstructor
+public class BeerOrderServiceJPA implements BeerOrderService {
+
+    private final BeerOrderRepository beerOrderRepository;
+    private final BeerOrderLineRepository beerOrderLineRepository;
+    private final CustomerRepository customerRepository;
+    private final BeerRepository beerRepository;
+    private final BeerOrderMapper beerOrderMapper;
+    private final CustomerOrderRollupService customerOrderRollupService;
+
+    private static final int DEFAULT_PAGE = 0;
+    private static final int DEFAULT_PAGE_SIZE = 25;
+
+    @Override
+    @Transactional
+    public BeerOrderDTO placeOrder(BeerOrderCreateDTO beerOrder) {
+        if (customerRepository.lockIdById(beerOrder.getCustomerId()).isEmpty())
+            throw new BadRequestException("Unknown customer " + beerOrder.getCustomerId());
+
+        Set<UUID> beerIds = new HashSet<>();
+        beerOrder.getBeerOrderLines().forEach(line -> beerIds.add(line.getBeerId()));
+
+        Map<UUID, BigDecimal> prices = new HashMap<>();
+        beerRepository.findPricesByIdIn(beerIds).forEach(beer -> prices.put(beer.getId(), beer.getPrice()));
+
+        Set<UUID> unknownBeerIds = new TreeSet<>(beerIds);
+        unknownBeerIds.removeAll(prices.keySet());
+
+        if (!unknownBeerIds.isEmpty())
+            throw new BadRequestException("Unknown beers " + unknownBeerIds);
+
+        BeerOrder savedOrder = beerOrderRepository.save(BeerOrder.builder()
+                .customerRef(beerOrder.getCustomerRef())
+                .customer(customerRepository.getReferenceById(beerOrder.getCustomerId()))
+                .beerOrderShipment(BeerOrderShipment.builder().build())
+                .beerOrderLines(new LinkedHashSet<>())
+                .build());
+
+        long units = 0;
+        BigDecimal spend = BigDecimal.ZERO;
+
+        for (BeerOrderLineCreateDTO line : beerOrder.getBeerOrderLines()) {
+            BigDecimal unitPrice = prices.get(line.getBeerId());
+
+            savedOrder.getBeerOrderLines().add(BeerOrderLine.builder()
+                    .beerOrder(savedOrder)
+                    .beer(beerRepository.getReferenceById(line.getBeerId()))
+                    .orderQuantity(line.getOrderQuantity())
+                    .quantityAllocated(0)
+                    .unitPrice(unitPrice)
+                    .build());
+
+            units += line.getOrderQuantity();
+            spend = spend.add(unitPrice.multiply(BigDecimal.valueOf(line.getOrderQuantity())));
+        }
+
+        beerOrderLineRepository.saveAll(savedOrder.getBeerOrderLines());
+
+        // sends the inserts now instead of at commit, so the timestamps and versions are set for the response
+        beerOrderRepository.flush();
+
+        customerOrderRollupService.addOrder(beerOrder.getCustomerId(), units, spend, savedOrder.getCreatedDate());
+
+        return beerOrderMapper.beerOrderToBeerOrderDto(savedOrder);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BeerOrderDTO> getOrderById(UUID id) {
+        return beerOrderRepository.findWithLinesById(id).map(beerOrderMapper::beerOrderToBeerOrderDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BeerOrderDTO> listOrders(UUID customerId, Integer pageNumber, Integer pageSize) {
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+
+        Page<BeerOrder> beerOrderPage = customerId == null
+                ? beerOrderRepository.findAllBy(pageRequest)
+                : beerOrderRepository.findAllByCustomerId(customerId, pageRequest);
+
+        return beerOrderPage.map(beerOrderMapper::beerOrderToBeerOrderDto);
+    }
+
+    public PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+        int queryPageNumber;
+
+        if (pageNumber != null && pageNumber > 0)
+            queryPageNumber = pageNumber - 1;
+        else
+            queryPageNumber = DEFAULT_PAGE;
+
+        // the id makes the order stable across pages when orders are placed at the same time
+        Sort sort = Sort.by(Sort.Order.desc("createdDate"), Sort.Order.desc("id"));
+
+        return PageRequest.of(queryPageNumber, resolvePageSize(pageSize), sort);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CursorPage<BeerOrderSummaryDTO>> listCustomerOrders(UUID customerId, String after,
+                                                                       Integer pageSize) {
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        int limit = resolvePageSize(pageSize);
+
+        // one row more than asked for tells whether there is a next page
+        List<BeerOrderSummaryDTO> orders = cursor == null
+                ? beerOrderRepository.findFirstOrderSummaries(customerId, Limit.of(limit + 1))
+                : beerOrderRepository.findOrderSummariesAfter(customerId, createdDate(cursor), cursor.getId(),
+                Limit.of(limit + 1));
+
+        // only an empty first page needs telling apart an unknown customer from one without orders
+        if (orders.isEmpty() && cursor == null && !customerRepository.existsById(customerId))
+            return Optional.empty();
+
+        boolean hasNext = orders.size() > limit;
+        List<BeerOrderSummaryDTO> content = hasNext ? orders.subList(0, limit) : orders;
+
+        String next = null;
+        if (hasNext) {
+            BeerOrderSummaryDTO last = content.get(content.size() - 1);
+            next = new KeysetCursor(last.getCreatedDate().toString(), last.getId()).encode();
+        }
+
+        return Optional.of(CursorPage.<BeerOrderSummaryDTO>builder()
+                .content(content)
+                .size(content.size())
+                .hasNext(hasNext)
+                .next(next)
+                .build());
+    }
+
+    private static Timestamp createdDate(KeysetCursor cursor) {
+        if (cursor.getKey() == null)
+            throw new BadRequestException("Invalid cursor: no created date");
+
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(cursor.getKey()));
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor.getKey(), e);
+        }
+    }
+
+    private int resolvePageSize(Integer pageSize) {
+        if (pageSize == null)
+            return DEFAULT_PAGE_SIZE;
+        else if (pageSize < 1)
+            throw new BadRequestException("pageSize must be at least 1, got " + pageSize);
+        else if (pageSize > 1000)
+            return 1000;
+        else
+            return pageSize;
+    }
+}
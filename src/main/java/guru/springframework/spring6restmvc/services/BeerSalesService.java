@@ -0,0 +1,16 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.SalesReportDTO;
+
+import java.time.LocalDate;
+
+public interface BeerSalesService {
+
+    /**
+     * Best sellers overall and per style, over the order lines created from {@code from} through {@code to}.
+     *
+     * @param limit how many beers to list, overall and per style - at most 100
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if {@code from} is after {@code to}
+     */
+    SalesReportDTO getSalesReport(LocalDate from, LocalDate to, int limit);
+}
@@ -0,0 +1,517 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.model.BeerSalesDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.SalesReportDTO;
+import guru.springframework.spring6restmvc.model.StyleSalesDTO;
+import guru.springframework.spring6restmvc.repositories.BeerOrderLineRepository;
+import guru.springframework.spring6restmvc.repositories.BeerOrderLineRepository.LineSalesView;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerRepository.BeerNameView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sales reports aggregated in memory, so the database only serves short index range reads instead of a GROUP BY
+ * over all order lines.
+ * <p>
+ * The time between the first and the last line of the date range is cut into {@code beer.sales.partitions} slices
+ * of equal length, and each slice is read and summed by its own worker on the task executor - in (created date, id)
+ * order, {@code beer.sales.chunk-size} lines at a time, as (beer id, quantity) pairs. Each chunk is a range of the
+ * beer_order_line (created_date, id) index (V12), so only the lines of the range are read, and no worker holds a
+ * connection between its chunks. A worker gives every beer it sees its own dense int index and sums the units into a
+ * long array indexed by it, so workers share nothing until their partial sums are merged into one array. Only the
+ * beers that sold are then looked up for their names and styles.
+ * <p>
+ * The best sellers are picked by fork-join tasks over ranges of beer indexes (halving down to LEAF_SIZE beers), each
+ * keeping bounded heaps of beer indexes - one overall and one per style - which are merged pairwise. As the ranges
+ * don't overlap, the merged heaps are exact.
+ * <p>
+ * Reports are computed for the top 100 and cut down to the requested limit, and kept in a bounded cache for
+ * {@code beer.sales.cache.ttl} - so a report may miss the orders of the last few minutes. The cache holds futures:
+ * the first request for a range builds its report on its own thread, outside of the cache's locks, and concurrent
+ * requests for it wait on the future. Hit, miss and eviction counters are published as the "beerSales" cache
+ * metrics.
+ */
+@Slf4j
+@Service
+public class BeerSalesServiceImpl implements BeerSalesService {
+
+    // beers below which a fork-join task stops splitting
+    static final int LEAF_SIZE = 2048;
+
+    static final int MAX_LIMIT = 100;
+
+    // beer ids per name lookup
+    private static final int NAME_BATCH_SIZE = 1000;
+
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private final BeerOrderLineRepository beerOrderLineRepository;
+    private final BeerRepository beerRepository;
+    private final TaskExecutor taskExecutor;
+    private final int chunkSize;
+    private final int partitions;
+    private final AsyncCache<DateRange, SalesReportDTO> reports;
+
+    public BeerSalesServiceImpl(BeerOrderLineRepository beerOrderLineRepository,
+                                BeerRepository beerRepository,
+                                TaskExecutor taskExecutor,
+                                @Value("${beer.sales.chunk-size:10000}") int chunkSize,
+                                @Value("${beer.sales.partitions:4}") int partitions,
+                                @Value("${beer.sales.cache.maximum-size:100}") long maximumSize,
+                                @Value("${beer.sales.cache.ttl:5m}") Duration ttl,
+                                MeterRegistry meterRegistry) {
+        this.beerOrderLineRepository = beerOrderLineRepository;
+        this.beerRepository = beerRepository;
+        this.taskExecutor = taskExecutor;
+        this.chunkSize = chunkSize;
+        this.partitions = Math.max(1, partitions);
+        this.reports = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, reports, "beerSales");
+    }
+
+    private record DateRange(LocalDate from, LocalDate to) {
+    }
+
+    // lines created in [from, to)
+    private record TimeSlice(Timestamp from, Timestamp to) {
+    }
+
+    @Override
+    public SalesReportDTO getSalesReport(LocalDate from, LocalDate to, int limit) {
+        if (from.isAfter(to))
+            throw new BadRequestException("from " + from + " is after to " + to);
+
+        DateRange range = new DateRange(from, to);
+        CompletableFuture<SalesReportDTO> building = new CompletableFuture<>();
+        CompletableFuture<SalesReportDTO> report = reports.get(range, (key, executor) -> building);
+
+        // a miss - build it here, concurrent requests for the same range wait for it. A failed future is dropped by
+        // the cache, so the next request tries again
+        if (report == building) {
+            try {
+                building.complete(buildReport(range));
+            } catch (RuntimeException e) {
+                building.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        return truncate(join(report), Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+
+            throw e;
+        }
+    }
+
+    private SalesReportDTO buildReport(DateRange range) {
+        long start = System.currentTimeMillis();
+        Timestamp fromTime = Timestamp.valueOf(range.from().atStartOfDay());
+        Timestamp toTime = Timestamp.valueOf(range.to().plusDays(1).atStartOfDay());
+
+        List<CompletableFuture<PartialSales>> sums = slices(fromTime, toTime).stream()
+                .map(slice -> CompletableFuture.supplyAsync(() -> sum(slice), taskExecutor))
+                .toList();
+
+        List<PartialSales> partials = sums.stream().map(BeerSalesServiceImpl::join).toList();
+
+        BeerDictionary beers = new BeerDictionary();
+        long[] totals = new long[partials.stream().mapToInt(partial -> partial.ids.size()).sum()];
+        long lines = 0;
+
+        for (PartialSales partial : partials) {
+            for (int i = 0; i < partial.ids.size(); i++) {
+                totals[beers.indexOf(partial.ids.get(i))] += partial.units[i];
+            }
+
+            lines += partial.lines;
+        }
+
+        totals = Arrays.copyOf(totals, beers.size());
+        beers.resolveNames(beerRepository);
+
+        TopBeers top = ForkJoinPool.commonPool().invoke(new TopTask(totals, beers, 0, totals.length));
+
+        List<StyleSalesDTO> styles = new ArrayList<>();
+        for (BeerStyle style : STYLES) {
+            if (top.unitsByStyle[style.ordinal()] > 0) {
+                styles.add(StyleSalesDTO.builder()
+                        .beerStyle(style)
+                        .unitsSold(top.unitsByStyle[style.ordinal()])
+                        .topBeers(top.byStyle[style.ordinal()].toSales())
+                        .build());
+            }
+        }
+        styles.sort(Comparator.comparingLong(StyleSalesDTO::getUnitsSold).reversed());
+
+        log.debug("Sales report {} - {}: {} lines in {} slices in {} ms", range.from(), range.to(), lines,
+                sums.size(), System.currentTimeMillis() - start);
+
+        return SalesReportDTO.builder()
+                .from(range.from())
+                .to(range.to())
+                .linesScanned(lines)
+                .unitsSold(Arrays.stream(totals).sum())
+                .topBeers(top.overall.toSales())
+                .styles(List.copyOf(styles))
+                .generatedDate(LocalDateTime.now())
+                .build();
+    }
+
+    // cached reports are shared, so each caller gets its own copy
+    private static SalesReportDTO truncate(SalesReportDTO report, int limit) {
+        return SalesReportDTO.builder()
+                .from(report.getFrom())
+                .to(report.getTo())
+                .linesScanned(report.getLinesScanned())
+                .unitsSold(report.getUnitsSold())
+                .topBeers(first(report.getTopBeers(), limit))
+                .styles(report.getStyles().stream()
+                        .map(style -> StyleSalesDTO.builder()
+                                .beerStyle(style.getBeerStyle())
+                                .unitsSold(style.getUnitsSold())
+                                .topBeers(first(style.getTopBeers(), limit))
+                                .build())
+                        .toList())
+                .generatedDate(report.getGeneratedDate())
+                .build();
+    }
+
+    private static List<BeerSalesDTO> first(List<BeerSalesDTO> beers, int limit) {
+        return beers.stream()
+                .limit(limit)
+                .map(beer -> new BeerSalesDTO(beer.getBeerId(), beer.getBeerName(), beer.getBeerStyle(),
+                        beer.getUnitsSold()))
+                .toList();
+    }
+
+    // the range cut into slices of equal time between its first and its last line - none if it has no lines
+    private List<TimeSlice> slices(Timestamp fromTime, Timestamp toTime) {
+        List<LineSalesView> first = beerOrderLineRepository.findFirstSales(fromTime, toTime, Limit.of(1));
+        List<LineSalesView> last = beerOrderLineRepository.findLastSales(fromTime, toTime, Limit.of(1));
+
+        if (first.isEmpty() || last.isEmpty())
+            return List.of();
+
+        LocalDateTime firstDate = first.get(0).getCreatedDate().toLocalDateTime();
+        Duration step = Duration.between(firstDate, last.get(0).getCreatedDate().toLocalDateTime())
+                .dividedBy(partitions);
+
+        List<TimeSlice> slices = new ArrayList<>();
+        Timestamp sliceFrom = fromTime;
+
+        // the columns hold microseconds, so the boundaries do as well - a line can't fall between two slices
+        if (step.toNanos() >= 1000) {
+            for (int i = 1; i < partitions; i++) {
+                Timestamp sliceTo = Timestamp.valueOf(firstDate.plus(step.multipliedBy(i))
+                        .truncatedTo(ChronoUnit.MICROS));
+                slices.add(new TimeSlice(sliceFrom, sliceTo));
+                sliceFrom = sliceTo;
+            }
+        }
+
+        slices.add(new TimeSlice(sliceFrom, toTime));
+
+        return slices;
+    }
+
+    private PartialSales sum(TimeSlice slice) {
+        PartialSales partial = new PartialSales();
+        List<LineSalesView> chunk = beerOrderLineRepository.findFirstSales(slice.from(), slice.to(),
+                Limit.of(chunkSize));
+
+        while (true) {
+            chunk.forEach(partial::add);
+
+            if (chunk.size() < chunkSize)
+                return partial;
+
+            LineSalesView last = chunk.get(chunk.size() - 1);
+            chunk = beerOrderLineRepository.findSalesAfter(slice.to(), last.getCreatedDate(), last.getId(),
+                    Limit.of(chunkSize));
+        }
+    }
+
+    /**
+     * Units per beer of one slice, summed by the worker that reads it. Indexed by the worker's own dense beer
+     * indexes, so workers share nothing until their sums are merged.
+     */
+    private static final class PartialSales {
+
+        private final Map<UUID, Integer> indexes = new HashMap<>();
+        private final List<UUID> ids = new ArrayList<>();
+        private long[] units = new long[1024];
+        private long lines;
+
+        // a line without a beer is scanned, but sells nothing
+        void add(LineSalesView line) {
+            lines++;
+
+            if (line.getBeerId() == null || line.getOrderQuantity() == null)
+                return;
+
+            Integer index = indexes.get(line.getBeerId());
+
+            if (index == null) {
+                index = ids.size();
+                indexes.put(line.getBeerId(), index);
+                ids.add(line.getBeerId());
+
+                if (index == units.length)
+                    units = Arrays.copyOf(units, 2 * index);
+            }
+
+            units[index] += line.getOrderQuantity();
+        }
+    }
+
+    /**
+     * Dense int index per sold beer, with its name and style - only the beers that sold in the range are looked up.
+     * Filled by the merging thread, the fork-join tasks only read it.
+     */
+    private static final class BeerDictionary {
+
+        private final Map<UUID, Integer> indexes = new HashMap<>();
+        private final List<UUID> ids = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<BeerStyle> styles = new ArrayList<>();
+
+        int size() {
+            return ids.size();
+        }
+
+        int indexOf(UUID beerId) {
+            Integer index = indexes.get(beerId);
+
+            if (index == null) {
+                index = ids.size();
+                indexes.put(beerId, index);
+                ids.add(beerId);
+                names.add(null);
+                styles.add(null);
+            }
+
+            return index;
+        }
+
+        // beers deleted since keep no name and style
+        void resolveNames(BeerRepository beerRepository) {
+            for (int from = 0; from < ids.size(); from += NAME_BATCH_SIZE) {
+                List<UUID> batch = ids.subList(from, Math.min(from + NAME_BATCH_SIZE, ids.size()));
+
+                for (BeerNameView beer : beerRepository.findNamesByIdIn(batch)) {
+                    int index = indexes.get(beer.getId());
+                    names.set(index, beer.getBeerName());
+                    styles.set(index, beer.getBeerStyle());
+                }
+            }
+        }
+    }
+
+    /**
+     * The best selling beers of a range of beer indexes - most units first, then by name. A binary heap of the
+     * indexes in an int array, the worst ranked one at the root, to be dropped first.
+     */
+    private static final class TopHeap {
+
+        private final long[] totals;
+        private final BeerDictionary beers;
+        private final int[] heap = new int[MAX_LIMIT];
+        private int size;
+
+        TopHeap(long[] totals, BeerDictionary beers) {
+            this.totals = totals;
+            this.beers = beers;
+        }
+
+        void offer(int index) {
+            if (size < MAX_LIMIT) {
+                heap[size] = index;
+                siftUp(size++);
+            } else if (compare(index, heap[0]) < 0) {
+                heap[0] = index;
+                siftDown(0);
+            }
+        }
+
+        void merge(TopHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heap[i]);
+            }
+        }
+
+        // empties the heap, the worst ranked beer coming off first
+        List<BeerSalesDTO> toSales() {
+            BeerSalesDTO[] sales = new BeerSalesDTO[size];
+
+            while (size > 0) {
+                int index = heap[0];
+                sales[size - 1] = new BeerSalesDTO(beers.ids.get(index), beers.names.get(index),
+                        beers.styles.get(index), totals[index]);
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+
+            return List.of(sales);
+        }
+
+        // < 0 if the beer at index a ranks before the one at b
+        private int compare(int a, int b) {
+            int byUnits = Long.compare(totals[b], totals[a]);
+            if (byUnits != 0)
+                return byUnits;
+
+            String nameA = beers.names.get(a);
+            String nameB = beers.names.get(b);
+            if (nameA == null || nameB == null) {
+                if (nameA != nameB)
+                    return nameA == null ? 1 : -1;
+            } else if (!nameA.equals(nameB)) {
+                return nameA.compareTo(nameB);
+            }
+
+            return beers.ids.get(a).compareTo(beers.ids.get(b));
+        }
+
+        private void siftUp(int child) {
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+
+                if (compare(heap[child], heap[parent]) <= 0)
+                    return;
+
+                swap(child, parent);
+                child = parent;
+            }
+        }
+
+        private void siftDown(int parent) {
+            while (true) {
+                int worse = 2 * parent + 1;
+
+                if (worse >= size)
+                    return;
+
+                if (worse + 1 < size && compare(heap[worse + 1], heap[worse]) > 0)
+                    worse++;
+
+                if (compare(heap[worse], heap[parent]) <= 0)
+                    return;
+
+                swap(parent, worse);
+                parent = worse;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int index = heap[i];
+            heap[i] = heap[j];
+            heap[j] = index;
+        }
+    }
+
+    private static final class TopBeers {
+
+        private final TopHeap overall;
+        private final TopHeap[] byStyle = new TopHeap[STYLES.length];
+        private final long[] unitsByStyle = new long[STYLES.length];
+
+        TopBeers(long[] totals, BeerDictionary beers) {
+            overall = new TopHeap(totals, beers);
+
+            for (int i = 0; i < STYLES.length; i++) {
+                byStyle[i] = new TopHeap(totals, beers);
+            }
+        }
+
+        TopBeers merge(TopBeers other) {
+            overall.merge(other.overall);
+
+            for (int i = 0; i < STYLES.length; i++) {
+                byStyle[i].merge(other.byStyle[i]);
+                unitsByStyle[i] += other.unitsByStyle[i];
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * Top beers overall and per style, and units per style, of beer indexes [from, to).
+     */
+    private static final class TopTask extends RecursiveTask<TopBeers> {
+
+        private final long[] totals;
+        private final BeerDictionary beers;
+        private final int from;
+        private final int to;
+
+        TopTask(long[] totals, BeerDictionary beers, int from, int to) {
+            this.totals = totals;
+            this.beers = beers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopBeers compute() {
+            if (to - from <= LEAF_SIZE) {
+                TopBeers top = new TopBeers(totals, beers);
+
+                for (int index = from; index < to; index++) {
+                    if (totals[index] == 0)
+                        continue;
+
+                    top.overall.offer(index);
+
+                    BeerStyle style = beers.styles.get(index);
+                    if (style != null) {
+                        top.byStyle[style.ordinal()].offer(index);
+                        top.unitsByStyle[style.ordinal()] += totals[index];
+                    }
+                }
+
+                return top;
+            }
+
+            int middle = (from + to) >>> 1;
+            TopTask left = new TopTask(totals, beers, from, middle);
+            left.fork();
+            TopBeers right = new TopTask(totals, beers, middle, to).compute();
+
+            return right.merge(left.join());
+        }
+    }
+}
@@ -2,7 +2,10 @@ package guru.springframework.spring6restmvc.services;
 
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.TotalsMode;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -11,13 +14,26 @@ public interface BeerService {
 
     Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize);
 
+    Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize,
+                             TotalsMode totals);
+
+    CursorPage<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, Boolean showInventory, String after, Integer pageSize);
+
     Optional<BeerDTO> getBeerById(UUID id);
 
     BeerDTO saveNewBeer(BeerDTO beer);
 
-    Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer);
+    /**
+     * @return false if there's no such beer
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the beer has another version than the
+     *                                                                   one given
+     */
+    boolean updateBeerById(UUID beerId, BeerDTO beer);
 
     boolean deleteById(UUID beerId);
 
-    Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer);
+    /**
+     * Same as {@link #updateBeerById(UUID, BeerDTO)}, but only changes the fields that are set.
+     */
+    boolean patchBeerById(UUID beerId, BeerDTO beer);
 }
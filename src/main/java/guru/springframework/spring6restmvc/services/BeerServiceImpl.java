@@ -2,9 +2,12 @@ package guru.springframework.spring6restmvc.services;
 
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.TotalsMode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -68,6 +71,24 @@ public class BeerServiceImpl implements BeerService {
         return new PageImpl<>(new ArrayList<>(beerMap.values()));
     }
 
+    @Override
+    public Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber,
+                                    Integer pageSize, TotalsMode totals) {
+        return listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+    }
+
+    @Override
+    public CursorPage<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, Boolean showInventory,
+                                              String after, Integer pageSize) {
+        List<BeerDTO> beers = new ArrayList<>(beerMap.values());
+
+        return CursorPage.<BeerDTO>builder()
+                .content(beers)
+                .size(beers.size())
+                .hasNext(false)
+                .build();
+    }
+
 
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
@@ -98,7 +119,7 @@ public class BeerServiceImpl implements BeerService {
     }
 
     @Override
-    public Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer) {
+    public boolean updateBeerById(UUID beerId, BeerDTO beer) {
         BeerDTO existing = beerMap.get(beerId);
 
         existing.setBeerName(beer.getBeerName());
@@ -109,7 +130,7 @@ public class BeerServiceImpl implements BeerService {
 
         // ! the line below is unnecessary, the reference is passed correctly without it
         // ! beerMap.put(beerId, existing);
-        return Optional.of(existing);
+        return true;
     }
 
     @Override
@@ -120,7 +141,7 @@ public class BeerServiceImpl implements BeerService {
     }
 
     @Override
-    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer) {
+    public boolean patchBeerById(UUID beerId, BeerDTO beer) {
 
         /*
         * In patch, the rule of thumb is that:
@@ -145,6 +166,6 @@ public class BeerServiceImpl implements BeerService {
         if (StringUtils.hasText(beer.getUpc()))
             existing.setUpc(beer.getUpc());
 
-        return Optional.of(existing);
+        return true;
     }
 }
@@ -1,22 +1,43 @@
 package guru.springframework.spring6restmvc.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.controller.StillReferencedException;
 import guru.springframework.spring6restmvc.entities.Beer;
 import guru.springframework.spring6restmvc.mappers.BeerMapper;
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import guru.springframework.spring6restmvc.model.TotalsMode;
 import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,79 +47,185 @@ public class BeerServiceJPA implements BeerService {
 
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
+    private final BeerNameIndex beerNameIndex;
+    private final BeerCache beerCache;
+    private final Validator validator;
 
     private static final int DEFAULT_PAGE = 0;
     private static final int DEFAULT_PAGE_SIZE = 25;
 
+    private static final Duration COUNT_ESTIMATE_TTL = Duration.ofMinutes(5);
+    private static final int COUNT_ESTIMATE_MAX_ENTRIES = 1000;
+
+    // filter combination -> total number of matching beers, used by TotalsMode.ESTIMATE
+    private final Cache<String, Long> countEstimates = Caffeine.newBuilder()
+            .expireAfterWrite(COUNT_ESTIMATE_TTL)
+            .maximumSize(COUNT_ESTIMATE_MAX_ENTRIES)
+            .build();
+
     @Override
     public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory,
                                    Integer pageNumber, Integer pageSize) {
 
         PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+        boolean withInventory = showInventory == null || showInventory;
+
+        if (StringUtils.hasText(beerName) && beerNameIndex.canSearch(beerName)) {
+            return listIndexedBeers(beerNameIndex.search(beerName, beerStyle), withInventory, pageRequest);
+        }
+
+        Slice<BeerDTO> beerSlice = beerRepository.findBeerDtos(
+                beerNamePattern(beerName), beerStyle, withInventory, pageRequest);
+
+        // only counts when the slice alone can't tell the total (e.g. not for a short first or last page)
+        return PageableExecutionUtils.getPage(beerSlice.getContent(), pageRequest,
+                () -> countBeers(beerName, beerStyle));
+    }
+
+    @Override
+    public Slice<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory,
+                                    Integer pageNumber, Integer pageSize, TotalsMode totals) {
+
+        if (totals == null || totals == TotalsMode.EXACT) {
+            return listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        }
+
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+        boolean withInventory = showInventory == null || showInventory;
+
+        Slice<BeerDTO> dtoSlice;
+
+        if (StringUtils.hasText(beerName) && beerNameIndex.canSearch(beerName)) {
+            Page<BeerDTO> beerPage = listIndexedBeers(
+                    beerNameIndex.search(beerName, beerStyle), withInventory, pageRequest);
+            dtoSlice = new SliceImpl<>(beerPage.getContent(), pageRequest, beerPage.hasNext());
+        } else {
+            dtoSlice = beerRepository.findBeerDtos(beerNamePattern(beerName), beerStyle, withInventory, pageRequest);
+        }
+
+        if (totals == TotalsMode.NONE) {
+            return dtoSlice;
+        }
+
+        long estimate = countEstimates.get(countEstimateKey(beerName, beerStyle),
+                key -> countBeers(beerName, beerStyle));
+
+        // a stale estimate must not claim there is nothing after a slice that knows it has a next one
+        if (dtoSlice.hasNext() && estimate <= pageRequest.getOffset() + pageRequest.getPageSize()) {
+            estimate = pageRequest.getOffset() + pageRequest.getPageSize() + 1;
+        }
+
+        return new PageImpl<>(dtoSlice.getContent(), pageRequest, estimate);
+    }
+
+    private String countEstimateKey(String beerName, BeerStyle beerStyle) {
+        return (StringUtils.hasText(beerName) ? beerName.toLowerCase() : "") + "|" + beerStyle;
+    }
+
+    private long countBeers(String beerName, BeerStyle beerStyle) {
+        if (StringUtils.hasText(beerName) && beerStyle == null) {
+            return beerRepository.countByBeerNameIsLikeIgnoreCase(beerNamePattern(beerName));
+        } else if (!StringUtils.hasText(beerName) && beerStyle != null) {
+            return beerRepository.countByBeerStyle(beerStyle);
+        } else if (StringUtils.hasText(beerName) && beerStyle != null) {
+            return beerRepository.countByBeerNameIsLikeIgnoreCaseAndBeerStyle(beerNamePattern(beerName), beerStyle);
+        } else {
+            return beerRepository.count();
+        }
+    }
+
+    @Override
+    public CursorPage<BeerDTO> listBeersAfter(String beerName, BeerStyle beerStyle, Boolean showInventory,
+                                              String after, Integer pageSize) {
 
-        Page<Beer> beerPage;
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        int limit = resolvePageSize(pageSize);
+        boolean withInventory = showInventory == null || showInventory;
 
-        if (StringUtils.hasText(beerName) && beerStyle == null) { // by beerName
-            beerPage = listBeersByName(beerName, pageRequest);
-        } else if (!StringUtils.hasText(beerName) && beerStyle != null) { // by beerStyle
-            beerPage = listBeersByStyle(beerStyle, pageRequest);
-        } else if (StringUtils.hasText(beerName) && beerStyle != null) { // by beerName AND beerStyle
-            beerPage = listBeersByNameAndStyle(beerName, beerStyle, pageRequest);
+        // beer names are never null, so neither are the keys of the cursors handed out for them
+        if (cursor != null && cursor.getKey() == null)
+            throw new BadRequestException("Invalid cursor: " + after);
+
+        Slice<BeerDTO> beerSlice;
+
+        if (StringUtils.hasText(beerName) && beerNameIndex.canSearch(beerName)) {
+            Page<BeerDTO> beerPage = listIndexedBeers(
+                    beerNameIndex.search(beerName, beerStyle, cursor), withInventory, PageRequest.of(0, limit));
+            beerSlice = new SliceImpl<>(beerPage.getContent(), beerPage.getPageable(), beerPage.hasNext());
         } else {
-            beerPage = beerRepository.findAll(pageRequest);
+            beerSlice = beerRepository.findBeerDtosAfter(
+                    beerNamePattern(beerName), beerStyle, cursor, withInventory, limit);
         }
 
-        if (showInventory != null && !showInventory) {
-            beerPage.forEach(beer -> beer.setQuantityOnHand(null));
+        List<BeerDTO> content = beerSlice.getContent();
+
+        String next = null;
+        if (beerSlice.hasNext()) {
+            BeerDTO last = content.get(content.size() - 1);
+            next = new KeysetCursor(last.getBeerName(), last.getId()).encode();
         }
 
-        return beerPage.map(beerMapper::beerToBeerDto);
+        return CursorPage.<BeerDTO>builder()
+                .content(content)
+                .size(content.size())
+                .hasNext(beerSlice.hasNext())
+                .next(next)
+                .build();
     }
 
     public PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
         int queryPageNumber;
-        int queryPageSize;
 
         if (pageNumber != null && pageNumber > 0)
             queryPageNumber = pageNumber - 1;
         else
             queryPageNumber = DEFAULT_PAGE;
 
-        if (pageSize == null)
-            queryPageSize = DEFAULT_PAGE_SIZE;
-        else if (pageSize > 1000)
-            queryPageSize = 1000;
-        else
-            queryPageSize = pageSize;
-
         Sort sort = Sort.by(Sort.Order.asc("beerName"));
 
-        return PageRequest.of(queryPageNumber, queryPageSize, sort);
+        return PageRequest.of(queryPageNumber, resolvePageSize(pageSize), sort);
     }
 
-    public Page<Beer> listBeersByNameAndStyle(String beerName, BeerStyle beerStyle, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle(
-                "%" + beerName + "%",
-                beerStyle,
-                pageRequest);
+    private int resolvePageSize(Integer pageSize) {
+        if (pageSize == null)
+            return DEFAULT_PAGE_SIZE;
+        else if (pageSize < 1)
+            throw new BadRequestException("pageSize must be at least 1, got " + pageSize);
+        else if (pageSize > 1000)
+            return 1000;
+        else
+            return pageSize;
     }
 
-    public Page<Beer> listBeersByStyle(BeerStyle beerStyle, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerStyle(beerStyle, pageRequest);
+    // % are wildcard search characters for SQL
+    private static String beerNamePattern(String beerName) {
+        return StringUtils.hasText(beerName) ? "%" + beerName + "%" : null;
     }
 
-    public Page<Beer> listBeersByName(String beerName, PageRequest pageRequest) {
-        return beerRepository.findAllByBeerNameIsLikeIgnoreCase("%" + beerName + "%", pageRequest); // % = SQL wildcard
-        // % are wildcard search characters for SQL
+    /**
+     * Cuts the requested page out of the (already sorted) ids resolved by the beer name index, and loads only those
+     * beers by primary key. The index knows every match, so the total comes for free, without a count query.
+     */
+    private Page<BeerDTO> listIndexedBeers(List<UUID> matchingIds, boolean showInventory, PageRequest pageRequest) {
+        int from = (int) Math.min(pageRequest.getOffset(), matchingIds.size());
+        int to = Math.min(from + pageRequest.getPageSize(), matchingIds.size());
+        List<UUID> pageIds = matchingIds.subList(from, to);
+
+        Map<UUID, BeerDTO> beersById = beerRepository.findBeerDtosByIds(pageIds, showInventory).stream()
+                .collect(Collectors.toMap(BeerDTO::getId, Function.identity()));
+
+        // the IN query doesn't keep the order of the ids, so restore the index order
+        List<BeerDTO> beers = pageIds.stream()
+                .map(beersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        return new PageImpl<>(beers, pageRequest, matchingIds.size());
     }
 
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
-        return Optional.ofNullable(
-                beerMapper.beerToBeerDto(
-                        beerRepository.findById(id).orElse(null)
-                )
-        );
+        return beerCache.get(id, beerRepository::findBeerDtoById);
     }
 
     @Override
@@ -107,67 +234,89 @@ public class BeerServiceJPA implements BeerService {
         // 1. beerMapper.beerDtoToBeer(beer) - takes the beer DTO and converts it into a beer entity
         // 2. beerRepository.save(...) - returns the saved beer object with autogenerated UUID and version
         // 3. beerMapper.beerToBeerDto(...) - converts back from entity into a DTO
-        return beerMapper.beerToBeerDto(beerRepository.save(beerMapper.beerDtoToBeer(beer)));
+        Beer savedBeer = beerRepository.save(beerMapper.beerDtoToBeer(beer));
+        beerNameIndex.put(savedBeer);
+
+        return beerMapper.beerToBeerDto(savedBeer);
     }
 
     @Override
-    public Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer) {
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
-
-        beerRepository.findById(beerId).ifPresentOrElse(
-                foundBeer -> { // * if present
-                    foundBeer.setBeerName(beer.getBeerName());
-                    foundBeer.setBeerStyle(beer.getBeerStyle());
-                    foundBeer.setUpc(beer.getUpc());
-                    foundBeer.setPrice(beer.getPrice());
-                    foundBeer.setQuantityOnHand(beer.getQuantityOnHand());
-                    foundBeer.setVersion(beer.getVersion());
-                    atomicReference.set(
-                            Optional.of(beerMapper.beerToBeerDto(beerRepository.save(foundBeer)))
-                    );
-                },
-                () -> { // * else
-                    atomicReference.set(Optional.empty());
-                }
-        );
-
-        return atomicReference.get();
+    public boolean updateBeerById(UUID beerId, BeerDTO beer) {
+        if (!validateChanges(beerId, beer, false))
+            return false;
+
+        return afterUpdate(beerId, beerRepository.updateBeer(beerId, beer.getVersion(), beer, false), beer);
     }
 
     @Override
     public boolean deleteById(UUID beerId) {
-        if (beerRepository.existsById(beerId)) {
-            beerRepository.deleteById(beerId);
-            return true;
+        try {
+            if (beerRepository.deleteBeerById(beerId) == 0)
+                return false;
+        } catch (DataIntegrityViolationException e) {
+            if (!StillReferencedException.isForeignKeyViolation(e))
+                throw e;
+
+            throw new StillReferencedException("Beer " + beerId + " is on an order", e);
         }
-        return false;
+
+        beerNameIndex.remove(beerId);
+        beerCache.evict(beerId);
+        return true;
     }
 
     @Override
-    public Optional<BeerDTO> patchBeerById(UUID beerId, BeerDTO beer) {
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
-
-        beerRepository.findById(beerId).ifPresentOrElse(
-                foundBeer -> { // * if present
-                    if (StringUtils.hasText(beer.getBeerName()))
-                        foundBeer.setBeerName(beer.getBeerName());
-                    if (beer.getBeerStyle() != null)
-                        foundBeer.setBeerStyle(beer.getBeerStyle());
-                    if (StringUtils.hasText(beer.getUpc()))
-                        foundBeer.setUpc(beer.getUpc());
-                    if (beer.getPrice() != null)
-                        foundBeer.setPrice(beer.getPrice());
-                    if (beer.getQuantityOnHand() != null)
-                        foundBeer.setQuantityOnHand(beer.getQuantityOnHand());
-                    atomicReference.set(
-                            Optional.of(beerMapper.beerToBeerDto(beerRepository.save(foundBeer)))
-                    );
-                },
-                () -> { // * else
-                    atomicReference.set(Optional.empty());
-                }
-        );
-
-        return atomicReference.get();
+    public boolean patchBeerById(UUID beerId, BeerDTO beer) {
+        if (!validateChanges(beerId, beer, true))
+            return false;
+
+        return afterUpdate(beerId, beerRepository.updateBeer(beerId, beer.getVersion(), beer, true), beer);
+    }
+
+    /**
+     * The single UPDATE can't tell a missing beer from one with another version, so only when it didn't update
+     * anything, the version is looked up to tell which one it was.
+     */
+    private boolean afterUpdate(UUID beerId, int updatedRows, BeerDTO changes) {
+        if (updatedRows == 0) {
+            if (beerRepository.findVersionById(beerId).isEmpty())
+                return false;
+
+            throw new ObjectOptimisticLockingFailureException(Beer.class, beerId);
+        }
+
+        beerNameIndex.update(beerId, StringUtils.hasText(changes.getBeerName()) ? changes.getBeerName() : null,
+                changes.getBeerStyle());
+        beerCache.evict(beerId);
+
+        return true;
+    }
+
+    /**
+     * The bulk UPDATE skips the bean validation Hibernate runs before flushing an entity, so the columns it's going
+     * to set are checked against the entity constraints here.
+     *
+     * @return false if the changes are invalid, but for a beer that doesn't exist anyway (so that's what's reported)
+     * @throws ConstraintViolationException if the changes are invalid
+     */
+    private boolean validateChanges(UUID beerId, BeerDTO changes, boolean skipEmpty) {
+        Set<ConstraintViolation<Beer>> violations = new HashSet<>();
+
+        if (!skipEmpty || StringUtils.hasText(changes.getBeerName()))
+            violations.addAll(validator.validateValue(Beer.class, "beerName", changes.getBeerName()));
+        if (!skipEmpty || changes.getBeerStyle() != null)
+            violations.addAll(validator.validateValue(Beer.class, "beerStyle", changes.getBeerStyle()));
+        if (!skipEmpty || StringUtils.hasText(changes.getUpc()))
+            violations.addAll(validator.validateValue(Beer.class, "upc", changes.getUpc()));
+        if (!skipEmpty || changes.getPrice() != null)
+            violations.addAll(validator.validateValue(Beer.class, "price", changes.getPrice()));
+
+        if (violations.isEmpty())
+            return true;
+
+        if (beerRepository.findVersionById(beerId).isEmpty())
+            return false;
+
+        throw new ConstraintViolationException(violations);
     }
 }
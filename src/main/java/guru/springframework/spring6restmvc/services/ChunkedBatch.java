@@ -0,0 +1,146 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The part of a batch save the batch services share: the size limit, the checks up front and the chunking.
+ * <p>
+ * Items that are null, fail validation or repeat an id seen earlier in the request are reported without touching the
+ * database - two items with the same id would update the same row, and only the last one would stick. The rest are
+ * handed to a {@link ChunkWriter} in chunks of {@code chunkSize} items, each in its own transaction. If a chunk fails,
+ * only that chunk is rolled back and its items are reported as FAILED - the chunks before and after it stay applied.
+ *
+ * @param <T> the DTO the batch holds
+ */
+@Slf4j
+class ChunkedBatch<T> {
+
+    /**
+     * Writes one chunk inside its transaction and sets the result of each of its items.
+     */
+    @FunctionalInterface
+    interface ChunkWriter {
+
+        void write(List<Integer> chunk, BatchItemResult[] results);
+    }
+
+    private final String itemsName;
+    private final Function<T, UUID> idOf;
+    private final Function<T, String> validate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxSize;
+
+    /**
+     * @param itemsName what the items are called in messages, e.g. "beers"
+     * @param idOf the id of an item, null for a new one
+     * @param validate the violations of a non-null item, null if there are none
+     */
+    ChunkedBatch(String itemsName, Function<T, UUID> idOf, Function<T, String> validate,
+                 TransactionTemplate transactionTemplate, int chunkSize, int maxSize) {
+        this.itemsName = itemsName;
+        this.idOf = idOf;
+        this.validate = validate;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks the items and writes the accepted ones chunk by chunk.
+     *
+     * @return one result per item, in request order
+     * @throws BadRequestException if there are more than {@code maxSize} items
+     */
+    List<BatchItemResult> save(List<T> items, ChunkWriter writer) {
+        if (items.size() > maxSize)
+            throw new BadRequestException(
+                    "A batch may hold at most " + maxSize + " " + itemsName + ", got " + items.size());
+
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        Map<UUID, Integer> firstIndexById = new HashMap<>();
+
+        for (int index = 0; index < items.size(); index++) {
+            T item = items.get(index);
+            String violations = item == null ? "must not be null" : validate.apply(item);
+
+            if (violations != null) {
+                results[index] = result(index, BatchItemStatus.INVALID).error(violations).build();
+                continue;
+            }
+
+            UUID id = idOf.apply(item);
+            Integer firstIndex = id == null ? null : firstIndexById.putIfAbsent(id, index);
+
+            if (firstIndex != null) {
+                results[index] = result(index, BatchItemStatus.CONFLICT)
+                        .id(id)
+                        .error("Same id as item " + firstIndex)
+                        .build();
+                continue;
+            }
+
+            acceptedIndexes.add(index);
+        }
+
+        for (int from = 0; from < acceptedIndexes.size(); from += chunkSize) {
+            List<Integer> chunk = acceptedIndexes.subList(from, Math.min(from + chunkSize, acceptedIndexes.size()));
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> writer.write(chunk, results));
+            } catch (RuntimeException e) {
+                log.warn("Batch chunk of {} {} rolled back", chunk.size(), itemsName, e);
+
+                // whatever the chunk did is undone, only the items it rejected keep their reason
+                for (int index : chunk) {
+                    if (results[index] == null || results[index].getStatus() == BatchItemStatus.CREATED
+                            || results[index].getStatus() == BatchItemStatus.UPDATED) {
+                        results[index] = result(index, BatchItemStatus.FAILED).error(e.getMessage()).build();
+                    }
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * The result of an item the chunk created or updated.
+     */
+    static BatchItemResult applied(int index, BatchItemStatus status, UUID id, Integer version) {
+        return result(index, status).id(id).version(version).build();
+    }
+
+    /**
+     * The result of an item that is to update a row that doesn't exist.
+     */
+    static BatchItemResult notFound(int index, UUID id) {
+        return result(index, BatchItemStatus.NOT_FOUND).id(id).build();
+    }
+
+    /**
+     * The result of an item whose version is not the current one, or null if it is (or the item sent none).
+     */
+    static BatchItemResult staleVersion(int index, UUID id, Integer expected, Integer actual) {
+        if (expected == null || expected.equals(actual))
+            return null;
+
+        return result(index, BatchItemStatus.CONFLICT)
+                .id(id)
+                .version(actual)
+                .error("Expected version " + expected + " but is " + actual)
+                .build();
+    }
+
+    private static BatchItemResult.BatchItemResultBuilder result(int index, BatchItemStatus status) {
+        return BatchItemResult.builder().index(index).status(status);
+    }
+}
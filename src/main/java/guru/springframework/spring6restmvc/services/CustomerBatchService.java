@@ -0,0 +1,18 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+
+import java.util.List;
+
+public interface CustomerBatchService {
+
+    /**
+     * Inserts the customers without an id and updates the ones with an id.
+     *
+     * @return one result per customer, in the same order
+     * @throws guru.springframework.spring6restmvc.controller.BadRequestException if there are more customers than a
+     *                                                                            single batch may hold
+     */
+    List<BatchItemResult> upsertCustomers(List<CustomerDTO> customers);
+}
@@ -0,0 +1,101 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk customer upsert for CRM syncs, in chunks of {@code customer.batch.chunk-size} customers.
+ * <p>
+ * Each chunk is one short transaction: a single IN query loads the customers to update, version conflicts are
+ * detected by comparing in memory, and the inserts and updates go out as JDBC batches on commit. So a sync holds a
+ * pooled connection only for the few statements of a chunk at a time, instead of a findById and a save per customer.
+ * <p>
+ * Null customers and the same id twice in one request are reported up front by {@link ChunkedBatch} - a sync sending
+ * two states of the same customer can't say which one is meant.
+ */
+@Service
+public class CustomerBatchServiceImpl implements CustomerBatchService {
+
+    private final CustomerRepository customerRepository;
+    private final CustomerMapper customerMapper;
+    private final ChunkedBatch<CustomerDTO> batch;
+
+    public CustomerBatchServiceImpl(CustomerRepository customerRepository,
+                                    CustomerMapper customerMapper,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${customer.batch.chunk-size:500}") int chunkSize,
+                                    @Value("${customer.batch.max-size:10000}") int maxSize) {
+        this.customerRepository = customerRepository;
+        this.customerMapper = customerMapper;
+        // a CustomerDTO is valid as long as it's there
+        this.batch = new ChunkedBatch<>("customers", CustomerDTO::getId, customer -> null, transactionTemplate,
+                chunkSize, maxSize);
+    }
+
+    @Override
+    public List<BatchItemResult> upsertCustomers(List<CustomerDTO> customers) {
+        return batch.save(customers, (chunk, results) -> upsertChunk(customers, chunk, results));
+    }
+
+    private void upsertChunk(List<CustomerDTO> customers, List<Integer> chunk, BatchItemResult[] results) {
+        Set<UUID> ids = chunk.stream()
+                .map(index -> customers.get(index).getId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<UUID, Customer> existingCustomers = customerRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        Map<Integer, Customer> created = new LinkedHashMap<>();
+        Map<Integer, Customer> updated = new LinkedHashMap<>();
+
+        for (int index : chunk) {
+            CustomerDTO customer = customers.get(index);
+
+            if (customer.getId() == null) {
+                Customer newCustomer = customerMapper.customerDtoToCustomer(customer);
+                newCustomer.setVersion(null);
+                created.put(index, newCustomer);
+                continue;
+            }
+
+            Customer existingCustomer = existingCustomers.get(customer.getId());
+
+            if (existingCustomer == null) {
+                results[index] = ChunkedBatch.notFound(index, customer.getId());
+                continue;
+            }
+
+            BatchItemResult conflict = ChunkedBatch.staleVersion(index, customer.getId(), customer.getVersion(),
+                    existingCustomer.getVersion());
+
+            if (conflict != null) {
+                results[index] = conflict;
+            } else {
+                existingCustomer.setName(customer.getName());
+                updated.put(index, existingCustomer);
+            }
+        }
+
+        customerRepository.saveAll(created.values());
+        customerRepository.flush();
+
+        created.forEach((index, customer) -> results[index] = applied(index, BatchItemStatus.CREATED, customer));
+        updated.forEach((index, customer) -> results[index] = applied(index, BatchItemStatus.UPDATED, customer));
+    }
+
+    private static BatchItemResult applied(int index, BatchItemStatus status, Customer customer) {
+        return ChunkedBatch.applied(index, status, customer.getId(), customer.getVersion());
+    }
+}
@@ -0,0 +1,12 @@
+package guru.springframework.spring6restmvc.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CustomerExportService {
+
+    /**
+     * Writes all customers as newline-delimited JSON (one CustomerDTO per line).
+     */
+    void exportNdjson(OutputStream outputStream) throws IOException;
+}
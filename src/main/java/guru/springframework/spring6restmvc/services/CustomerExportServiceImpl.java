@@ -0,0 +1,49 @@
+package guru.springframework.spring6restmvc.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams all customers straight from the database into the response, the same way {@link BeerExportServiceImpl}
+ * does for beers - one chunk of unmanaged DTOs at a time, so heap use doesn't grow with the number of customers.
+ */
+@Service
+@RequiredArgsConstructor
+public class CustomerExportServiceImpl implements CustomerExportService {
+
+    private final CustomerRepository customerRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(CustomerDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (Stream<CustomerDTO> customers = customerRepository.streamAllCustomerDtos()) {
+            // not closed on purpose - closing would close the response stream too
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            // each value ends its own line, without the default space in front of the next one
+            generator.setRootValueSeparator(null);
+
+            for (Iterator<CustomerDTO> iterator = customers.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
+
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.model.RollupRebuildResult;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CustomerOrderRollupService {
+
+    /**
+     * Adds a just placed order to the customer's totals, in the transaction that placed it - the order must be
+     * flushed already, and the transaction must hold the customer's row lock (CustomerRepository#lockIdById), taken
+     * before the order was inserted.
+     */
+    void addOrder(UUID customerId, long units, BigDecimal spend, Timestamp orderDate);
+
+    /**
+     * @return the customer's totals (all zero if it has no orders), or empty if the customer doesn't exist
+     */
+    Optional<CustomerOrderRollupDTO> getRollup(UUID customerId);
+
+    /**
+     * Recomputes the totals of all customers from their orders.
+     */
+    RollupRebuildResult rebuild();
+}
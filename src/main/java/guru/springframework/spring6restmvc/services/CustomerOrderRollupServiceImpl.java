@@ -0,0 +1,116 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.model.RollupRebuildResult;
+import guru.springframework.spring6restmvc.repositories.CustomerOrderRollupRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps a rollup row of order totals per customer, so reading them is a lookup by primary key.
+ * <p>
+ * Placing an order adds to the row with a single relative UPDATE in the placing transaction, so the totals commit
+ * (or roll back) together with the order. If the customer has no row yet - its first order, or orders placed before
+ * the rollup existed - the row is computed from the customer's orders instead, the new one included. The placing
+ * transaction holds the customer's row lock from before it inserted the order (see BeerOrderServiceJPA), so two
+ * first orders don't both insert the row: the second one waits for the lock and then finds the row.
+ * <p>
+ * A rebuild walks all customers in id order, in chunks of {@code customer.rollup.chunk-size}, each in its own
+ * transaction: it locks the chunk's customers, deletes their rows and recomputes them with a single INSERT ... SELECT.
+ * Orders placed meanwhile either commit before the chunk is recomputed, or wait for its row locks and add to the
+ * recomputed rows.
+ */
+@Slf4j
+@Service
+public class CustomerOrderRollupServiceImpl implements CustomerOrderRollupService {
+
+    private final CustomerOrderRollupRepository customerOrderRollupRepository;
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public CustomerOrderRollupServiceImpl(CustomerOrderRollupRepository customerOrderRollupRepository,
+                                          CustomerRepository customerRepository,
+                                          TransactionTemplate transactionTemplate,
+                                          @Value("${customer.rollup.chunk-size:500}") int chunkSize) {
+        this.customerOrderRollupRepository = customerOrderRollupRepository;
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    private record RebuiltChunk(UUID lastCustomerId, int customers, int rollups) {
+    }
+
+    @Override
+    @Transactional
+    public void addOrder(UUID customerId, long units, BigDecimal spend, Timestamp orderDate) {
+        if (customerOrderRollupRepository.addOrder(customerId, units, spend, orderDate) > 0)
+            return;
+
+        customerOrderRollupRepository.insertRollups(List.of(customerId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CustomerOrderRollupDTO> getRollup(UUID customerId) {
+        Optional<CustomerOrderRollupDTO> rollup = customerOrderRollupRepository.findRollupDtoByCustomerId(customerId);
+
+        if (rollup.isPresent() || !customerRepository.existsById(customerId))
+            return rollup;
+
+        return Optional.of(CustomerOrderRollupDTO.builder()
+                .customerId(customerId)
+                .orderCount(0L)
+                .unitsBought(0L)
+                .spend(BigDecimal.ZERO)
+                .build());
+    }
+
+    @Override
+    public RollupRebuildResult rebuild() {
+        long customers = 0;
+        long rollups = 0;
+        UUID after = null;
+
+        while (true) {
+            UUID chunkAfter = after;
+
+            RebuiltChunk chunk = transactionTemplate.execute(status -> {
+                List<UUID> customerIds = chunkAfter == null
+                        ? customerRepository.findFirstIdsForUpdate(Limit.of(chunkSize))
+                        : customerRepository.findIdsForUpdateAfter(chunkAfter, Limit.of(chunkSize));
+
+                if (customerIds.isEmpty())
+                    return null;
+
+                customerOrderRollupRepository.deleteRollups(customerIds);
+                int written = customerOrderRollupRepository.insertRollups(customerIds);
+
+                return new RebuiltChunk(customerIds.get(customerIds.size() - 1), customerIds.size(), written);
+            });
+
+            if (chunk == null)
+                break;
+
+            customers += chunk.customers();
+            rollups += chunk.rollups();
+            after = chunk.lastCustomerId();
+        }
+
+        log.debug("Rebuilt the order rollups of {} customers, {} with orders", customers, rollups);
+
+        return RollupRebuildResult.builder().customers(customers).rollups(rollups).build();
+    }
+}
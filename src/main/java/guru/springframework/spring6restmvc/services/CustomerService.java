@@ -1,22 +1,27 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import org.springframework.data.domain.Page;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface CustomerService {
 
-    List<CustomerDTO> listCustomers();
+    Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize);
+
+    CursorPage<CustomerDTO> listCustomersAfter(String after, Integer pageSize);
 
     Optional<CustomerDTO> getCustomerById(UUID id);
 
+    Optional<Integer> getCustomerVersion(UUID id);
+
     CustomerDTO saveNewCustomer(CustomerDTO customer);
 
-    Optional<CustomerDTO> updateCustomerById(UUID customerId, CustomerDTO customer);
+    boolean updateCustomerById(UUID customerId, CustomerDTO customer);
 
     boolean deleteCustomerById(UUID customerId);
 
-    Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer);
+    boolean patchCustomerById(UUID customerId, CustomerDTO customer);
 }
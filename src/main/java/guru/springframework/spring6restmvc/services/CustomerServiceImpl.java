@@ -1,6 +1,9 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -47,8 +50,19 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public List<CustomerDTO> listCustomers() {
-        return new ArrayList<>(customerMap.values());
+    public Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize) {
+        return new PageImpl<>(new ArrayList<>(customerMap.values()));
+    }
+
+    @Override
+    public CursorPage<CustomerDTO> listCustomersAfter(String after, Integer pageSize) {
+        List<CustomerDTO> customers = new ArrayList<>(customerMap.values());
+
+        return CursorPage.<CustomerDTO>builder()
+                .content(customers)
+                .size(customers.size())
+                .hasNext(false)
+                .build();
     }
 
     @Override
@@ -56,6 +70,11 @@ public class CustomerServiceImpl implements CustomerService {
         return Optional.of(customerMap.get(id));
     }
 
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID id) {
+        return Optional.ofNullable(customerMap.get(id)).map(CustomerDTO::getVersion);
+    }
+
     @Override
     public CustomerDTO saveNewCustomer(CustomerDTO customer) {
 
@@ -73,10 +92,10 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public Optional<CustomerDTO> updateCustomerById(UUID customerId, CustomerDTO customer) {
+    public boolean updateCustomerById(UUID customerId, CustomerDTO customer) {
         CustomerDTO existing = customerMap.get(customerId);
         existing.setName(customer.getName());
-        return Optional.of(existing);
+        return true;
     }
 
     @Override
@@ -86,13 +105,13 @@ public class CustomerServiceImpl implements CustomerService {
     }
 
     @Override
-    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer) {
+    public boolean patchCustomerById(UUID customerId, CustomerDTO customer) {
 
         CustomerDTO existing = customerMap.get(customerId);
 
         if (StringUtils.hasText(customer.getName()))
             existing.setName(customer.getName());
 
-        return Optional.of(existing);
+        return true;
     }
 }
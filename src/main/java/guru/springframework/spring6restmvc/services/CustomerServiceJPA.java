@@ -1,18 +1,25 @@
 package guru.springframework.spring6restmvc.services;
 
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.controller.StillReferencedException;
+import guru.springframework.spring6restmvc.entities.Customer;
 import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.*;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 @Service
 @Primary
@@ -22,12 +29,73 @@ public class CustomerServiceJPA implements CustomerService {
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
 
+    private static final int DEFAULT_PAGE = 0;
+    private static final int DEFAULT_PAGE_SIZE = 25;
+
     @Override
-    public List<CustomerDTO> listCustomers() {
-        return customerRepository.findAll()
-                .stream()
-                .map(customerMapper::customerToCustomerDTO)
-                .collect(Collectors.toList());
+    public Page<CustomerDTO> listCustomers(Integer pageNumber, Integer pageSize) {
+        PageRequest pageRequest = buildPageRequest(pageNumber, pageSize);
+
+        Slice<CustomerDTO> customerSlice = customerRepository.findCustomerDtos(pageRequest);
+
+        // only counts when the slice alone can't tell the total (e.g. not for a short first or last page)
+        return PageableExecutionUtils.getPage(customerSlice.getContent(), pageRequest, customerRepository::count);
+    }
+
+    @Override
+    public CursorPage<CustomerDTO> listCustomersAfter(String after, Integer pageSize) {
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        int limit = resolvePageSize(pageSize);
+
+        // one row more than asked for tells whether there is a next page
+        List<CustomerDTO> customers;
+        if (cursor == null)
+            customers = customerRepository.findFirstCustomerDtos(Limit.of(limit + 1));
+        else if (cursor.getKey() == null)
+            customers = customerRepository.findCustomerDtosAfterNullName(cursor.getId(), Limit.of(limit + 1));
+        else
+            customers = customerRepository.findCustomerDtosAfter(cursor.getKey(), cursor.getId(), Limit.of(limit + 1));
+
+        boolean hasNext = customers.size() > limit;
+        List<CustomerDTO> content = hasNext ? customers.subList(0, limit) : customers;
+
+        String next = null;
+        if (hasNext) {
+            CustomerDTO last = content.get(content.size() - 1);
+            next = new KeysetCursor(last.getName(), last.getId()).encode();
+        }
+
+        return CursorPage.<CustomerDTO>builder()
+                .content(content)
+                .size(content.size())
+                .hasNext(hasNext)
+                .next(next)
+                .build();
+    }
+
+    public PageRequest buildPageRequest(Integer pageNumber, Integer pageSize) {
+        int queryPageNumber;
+
+        if (pageNumber != null && pageNumber > 0)
+            queryPageNumber = pageNumber - 1;
+        else
+            queryPageNumber = DEFAULT_PAGE;
+
+        // the id makes the order stable across pages when names repeat
+        Sort sort = Sort.by(Sort.Order.asc("name"), Sort.Order.asc("id"));
+
+        return PageRequest.of(queryPageNumber, resolvePageSize(pageSize), sort);
+    }
+
+    private int resolvePageSize(Integer pageSize) {
+        if (pageSize == null)
+            return DEFAULT_PAGE_SIZE;
+        else if (pageSize < 1)
+            throw new BadRequestException("pageSize must be at least 1, got " + pageSize);
+        else if (pageSize > 1000)
+            return 1000;
+        else
+            return pageSize;
     }
 
     @Override
@@ -39,6 +107,11 @@ public class CustomerServiceJPA implements CustomerService {
         );
     }
 
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID id) {
+        return customerRepository.findVersionById(id);
+    }
+
     @Override
     public CustomerDTO saveNewCustomer(CustomerDTO customer) {
         // explanation from the inside out:
@@ -53,51 +126,43 @@ public class CustomerServiceJPA implements CustomerService {
     }
 
     @Override
-    public Optional<CustomerDTO> updateCustomerById(UUID customerId, CustomerDTO customer) {
-        AtomicReference<Optional<CustomerDTO>> atomicReference = new AtomicReference<>();
-
-        customerRepository.findById(customerId).ifPresentOrElse(
-                foundCustomer -> { // if present
-                    foundCustomer.setName(customer.getName());
-                    atomicReference.set(Optional.of(
-                            customerMapper.customerToCustomerDTO(customerRepository.save(foundCustomer))
-                    ));
-                },
-                () -> { // else
-                    atomicReference.set(Optional.empty());
-                }
-        );
-
-        return atomicReference.get();
+    public boolean updateCustomerById(UUID customerId, CustomerDTO customer) {
+        return afterUpdate(customerId,
+                customerRepository.updateName(customerId, customer.getVersion(), customer.getName()));
     }
 
     @Override
     public boolean deleteCustomerById(UUID customerId) {
-        if (customerRepository.existsById(customerId)) {
-            customerRepository.deleteById(customerId);
-            return true;
+        try {
+            return customerRepository.deleteCustomerById(customerId) > 0;
+        } catch (DataIntegrityViolationException e) {
+            if (!StillReferencedException.isForeignKeyViolation(e))
+                throw e;
+
+            throw new StillReferencedException("Customer " + customerId + " has orders", e);
         }
-        return false;
     }
 
     @Override
-    public Optional<CustomerDTO> patchCustomerById(UUID customerId, CustomerDTO customer) {
-        AtomicReference<Optional<CustomerDTO>> atomicReference = new AtomicReference<>();
-
-        customerRepository.findById(customerId).ifPresentOrElse(
-                foundCustomer -> { // if present
-                    if (StringUtils.hasText(customer.getName())) {
-                        foundCustomer.setName(customer.getName());
-                    }
-                    atomicReference.set(Optional.of(
-                            customerMapper.customerToCustomerDTO(customerRepository.save(foundCustomer))
-                    ));
-                },
-                () -> { // else
-                    atomicReference.set(Optional.empty());
-                }
-        );
+    public boolean patchCustomerById(UUID customerId, CustomerDTO customer) {
+        if (!StringUtils.hasText(customer.getName())) {
+            // nothing to change
+            return customerRepository.existsById(customerId);
+        }
+
+        return afterUpdate(customerId,
+                customerRepository.updateName(customerId, customer.getVersion(), customer.getName()));
+    }
+
+    // no row updated - either there's no such customer, or it has another version
+    private boolean afterUpdate(UUID customerId, int updatedRows) {
+        if (updatedRows == 0) {
+            if (customerRepository.findVersionById(customerId).isEmpty())
+                return false;
+
+            throw new ObjectOptimisticLockingFailureException(Customer.class, customerId);
+        }
 
-        return atomicReference.get();
+        return true;
     }
 }
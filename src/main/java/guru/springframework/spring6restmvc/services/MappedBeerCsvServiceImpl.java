@@ -0,0 +1,385 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerCSVRecord;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * {@link BeerCsvService} that memory-maps the file and tokenizes its bytes directly, instead of going through
+ * OpenCSV's reflective bean binding.
+ * <p>
+ * Numeric columns are parsed in place, columns the record has no field for are skipped without being copied, and
+ * only text columns become Strings - there is no String[] per line and no String per number. Records are handed to
+ * a callback as soon as they're parsed, so only the current one is held in memory.
+ * <p>
+ * In parallel mode the file is split at line boundaries into one range per core, and each range is parsed on its
+ * own thread. Files too big for a single mapping are split the same way, also when parsed sequentially. Splitting
+ * assumes quoted fields contain no line breaks, which holds for the catalog CSVs.
+ * <p>
+ * A Reader can't be mapped, so {@link #readCSV(Reader)} - and the mapping of records onto beers - is left to the
+ * OpenCSV implementation.
+ */
+@Service
+@Primary
+@RequiredArgsConstructor
+public class MappedBeerCsvServiceImpl implements BeerCsvService {
+
+    // well below the 2GB limit of a single mapping, so a range may grow by a line when aligned to a line break
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+
+    // below this, another thread costs more than it saves
+    private static final long MIN_PARALLEL_RANGE_SIZE = 1L << 20;
+
+    private final BeerCsvServiceImpl openCsvService;
+
+    @Override
+    public List<BeerCSVRecord> convertCSV(File csvFile) {
+        List<BeerCSVRecord> beerCSVRecords = new ArrayList<>();
+        parseCSV(csvFile, false, beerCSVRecords::add);
+        return beerCSVRecords;
+    }
+
+    @Override
+    public Iterable<BeerCSVRecord> readCSV(Reader reader) {
+        return openCsvService.readCSV(reader);
+    }
+
+    @Override
+    public Beer toBeer(BeerCSVRecord beerCSVRecord) {
+        return openCsvService.toBeer(beerCSVRecord);
+    }
+
+    @Override
+    public void parseCSV(File csvFile, boolean parallel, Consumer<BeerCSVRecord> consumer) {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size == 0)
+                return;
+
+            RangeParser headerParser = new RangeParser(map(channel, 0, Math.min(size, MAX_RANGE_SIZE)), null);
+            Column[] columns = headerParser.readHeader();
+
+            List<long[]> ranges = split(channel, headerParser.position, size, parallel);
+
+            if (parallel && ranges.size() > 1) {
+                ranges.parallelStream().forEach(range -> parseRange(channel, range, columns, consumer));
+            } else {
+                ranges.forEach(range -> parseRange(channel, range, columns, consumer));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void parseRange(FileChannel channel, long[] range, Column[] columns,
+                                   Consumer<BeerCSVRecord> consumer) {
+        new RangeParser(map(channel, range[0], range[1] - range[0]), columns).parse(consumer);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long start, long length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return [start, end) byte ranges covering the data lines, each one starting at the beginning of a line
+     */
+    private static List<long[]> split(FileChannel channel, long dataStart, long size, boolean parallel)
+            throws IOException {
+        long dataSize = size - dataStart;
+        long rangeCount = (dataSize + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE;
+
+        if (parallel) {
+            long cores = Runtime.getRuntime().availableProcessors();
+            rangeCount = Math.max(rangeCount, Math.min(cores, dataSize / MIN_PARALLEL_RANGE_SIZE));
+        }
+
+        rangeCount = Math.max(rangeCount, 1);
+
+        List<long[]> ranges = new ArrayList<>();
+        long start = dataStart;
+
+        for (long i = 1; i <= rangeCount && start < size; i++) {
+            long end = i == rangeCount ? size : nextLineStart(channel, dataStart + dataSize * i / rangeCount, size);
+
+            if (end > start)
+                ranges.add(new long[]{start, end});
+
+            start = end;
+        }
+
+        return ranges;
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        long position = from;
+
+        while (position < size) {
+            chunk.clear();
+            int read = channel.read(chunk, position);
+
+            if (read < 0)
+                break;
+
+            for (int i = 0; i < read; i++) {
+                if (chunk.get(i) == '\n')
+                    return position + i + 1;
+            }
+
+            position += read;
+        }
+
+        return size;
+    }
+
+    private enum Column {
+        ROW, COUNT_X, ABV, IBU, ID, BEER, STYLE, BREWERY_ID, OUNCES, STYLE2, COUNT_Y, CITY, STATE, LABEL, IGNORED;
+
+        // same names as the @CsvBindByName bindings of BeerCSVRecord, matched ignoring case like OpenCSV does
+        static Column forHeader(String name) {
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "row" -> ROW;
+                case "count.x" -> COUNT_X;
+                case "abv" -> ABV;
+                case "ibu" -> IBU;
+                case "id" -> ID;
+                case "beer" -> BEER;
+                case "style" -> STYLE;
+                case "brewery_id" -> BREWERY_ID;
+                case "ounces" -> OUNCES;
+                case "style2" -> STYLE2;
+                case "count.y" -> COUNT_Y;
+                case "city" -> CITY;
+                case "state" -> STATE;
+                case "label" -> LABEL;
+                default -> IGNORED;
+            };
+        }
+    }
+
+    /**
+     * Tokenizes one mapped range. Each field is unquoted into a reusable byte array, which numbers are parsed from
+     * and Strings are decoded from - so the only allocations are the records and their text fields.
+     */
+    private static final class RangeParser {
+
+        private static final float[] POWERS_OF_TEN = {1f, 10f, 100f, 1_000f, 10_000f, 100_000f, 1_000_000f, 10_000_000f};
+
+        private final ByteBuffer buffer;
+        private final Column[] columns;
+        private final int limit;
+
+        private int position;
+        private byte[] field = new byte[128];
+        private int fieldLength;
+        private boolean endOfLine;
+
+        RangeParser(ByteBuffer buffer, Column[] columns) {
+            this.buffer = buffer;
+            this.columns = columns;
+            this.limit = buffer.limit();
+        }
+
+        Column[] readHeader() {
+            List<Column> header = new ArrayList<>();
+
+            do {
+                readField(true);
+                header.add(Column.forHeader(text()));
+            } while (!endOfLine);
+
+            return header.toArray(new Column[0]);
+        }
+
+        void parse(Consumer<BeerCSVRecord> consumer) {
+            while (position < limit) {
+                if (skipBlankLine())
+                    continue;
+
+                BeerCSVRecord beerCSVRecord = new BeerCSVRecord();
+                int index = 0;
+
+                do {
+                    Column column = index < columns.length ? columns[index] : Column.IGNORED;
+                    readField(column != Column.IGNORED);
+                    assign(beerCSVRecord, column);
+                    index++;
+                } while (!endOfLine);
+
+                consumer.accept(beerCSVRecord);
+            }
+        }
+
+        private boolean skipBlankLine() {
+            byte b = buffer.get(position);
+
+            if (b == '\n') {
+                position++;
+                return true;
+            }
+
+            if (b == '\r' && (position + 1 == limit || buffer.get(position + 1) == '\n')) {
+                position = Math.min(position + 2, limit);
+                return true;
+            }
+
+            return false;
+        }
+
+        // reads up to and including the next delimiter or line break, copying the unquoted value only if asked to
+        private void readField(boolean copy) {
+            fieldLength = 0;
+
+            if (position < limit && buffer.get(position) == '"') {
+                position++;
+
+                while (position < limit) {
+                    byte b = buffer.get(position++);
+
+                    if (b == '"') {
+                        if (position < limit && buffer.get(position) == '"') {
+                            position++; // "" is an escaped quote
+                        } else {
+                            break;
+                        }
+                    }
+
+                    if (copy)
+                        append(b);
+                }
+            }
+
+            while (position < limit) {
+                byte b = buffer.get(position++);
+
+                if (b == ',') {
+                    endOfLine = false;
+                    return;
+                }
+
+                if (b == '\n') {
+                    endOfLine = true;
+                    return;
+                }
+
+                if (b != '\r' && copy)
+                    append(b);
+            }
+
+            endOfLine = true;
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length)
+                field = Arrays.copyOf(field, field.length * 2);
+
+            field[fieldLength++] = b;
+        }
+
+        private void assign(BeerCSVRecord beerCSVRecord, Column column) {
+            switch (column) {
+                case ROW -> beerCSVRecord.setRow(integer());
+                case COUNT_X -> beerCSVRecord.setCount(integer());
+                case ABV -> beerCSVRecord.setAbv(text());
+                case IBU -> beerCSVRecord.setIbu(text());
+                case ID -> beerCSVRecord.setId(integer());
+                case BEER -> beerCSVRecord.setBeer(text());
+                case STYLE -> beerCSVRecord.setStyle(text());
+                case BREWERY_ID -> beerCSVRecord.setBreweryId(integer());
+                case OUNCES -> beerCSVRecord.setOunces(decimal());
+                case STYLE2 -> beerCSVRecord.setStyle2(text());
+                case COUNT_Y -> beerCSVRecord.setCount_y(text());
+                case CITY -> beerCSVRecord.setCity(text());
+                case STATE -> beerCSVRecord.setState(text());
+                case LABEL -> beerCSVRecord.setLabel(text());
+                case IGNORED -> {
+                }
+            }
+        }
+
+        private String text() {
+            return new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+        }
+
+        private Integer integer() {
+            if (fieldLength == 0)
+                return null;
+
+            boolean negative = field[0] == '-';
+            int start = negative ? 1 : 0;
+            long value = 0;
+
+            if (start == fieldLength)
+                throw new NumberFormatException("Not a number: '" + text() + "'");
+
+            for (int i = start; i < fieldLength; i++) {
+                int digit = field[i] - '0';
+
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+                    throw new NumberFormatException("Not a number: '" + text() + "'");
+
+                value = value * 10 + digit;
+            }
+
+            value = negative ? -value : value;
+
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+                throw new NumberFormatException("Out of range: '" + text() + "'");
+
+            return (int) value;
+        }
+
+        private Float decimal() {
+            if (fieldLength == 0)
+                return null;
+
+            // plain digits with an optional fraction, up to 7 significant digits: both the mantissa and the power of
+            // ten are exact floats, so the division rounds exactly like Float.parseFloat
+            int mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+
+            for (int i = 0; i < fieldLength; i++) {
+                byte b = field[i];
+
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (b >= '0' && b <= '9' && digits < 7) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+
+                    if (fractionDigits >= 0)
+                        fractionDigits++;
+                } else {
+                    return Float.parseFloat(text()); // anything else (signs, exponents, long values)
+                }
+            }
+
+            if (digits == 0)
+                return Float.parseFloat(text());
+
+            return fractionDigits <= 0 ? (float) mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        }
+    }
+}
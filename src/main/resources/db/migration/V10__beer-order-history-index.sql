@@ -0,0 +1,5 @@
+-- customer order history - newest first, with the id as keyset (seek) pagination tie-breaker. It also serves the
+-- customer_id foreign key, which makes the single-column index redundant
+create index beer_order_customer_created_id_idx on beer_order (customer_id, created_date, id);
+
+drop index beer_order_customer_id_idx on beer_order;
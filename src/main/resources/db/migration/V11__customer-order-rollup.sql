@@ -0,0 +1,12 @@
+-- per-customer order totals (see CustomerOrderRollupServiceImpl) - kept current by order placement, and rebuilt
+-- from beer_order and beer_order_line on demand
+create table customer_order_rollup (
+                      customer_id binary(16) not null,
+                      order_count bigint not null,
+                      units_bought bigint not null,
+                      spend decimal(38,2) not null,
+                      last_order_date datetime(6),
+                      primary key (customer_id),
+                      constraint customer_order_rollup_customer_fk foreign key (customer_id) references customer (id)
+                          on delete cascade
+) engine=InnoDB;
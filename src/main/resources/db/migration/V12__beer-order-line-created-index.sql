@@ -0,0 +1,3 @@
+-- sales reports read the lines of a date range in (created_date, id) order, chunk by chunk, with the id as keyset
+-- (seek) pagination tie-breaker
+create index beer_order_line_created_id_idx on beer_order_line (created_date, id);
@@ -0,0 +1,7 @@
+-- the price a line was ordered at, so order totals and the customer order rollups don't change with the beer's price.
+-- Lines placed before it was recorded get the beer's price at the time of the migration - the best that is known
+alter table beer_order_line add column unit_price decimal(38,2);
+
+update beer_order_line l join beer b on b.id = l.beer_id set l.unit_price = b.price;
+
+alter table beer_order_line modify unit_price decimal(38,2) not null;
@@ -0,0 +1,12 @@
+-- beer listing - sorted by name, with the id as keyset (seek) pagination tie-breaker
+create index beer_name_id_idx on beer (beer_name, id);
+
+-- beer listing filtered by style - covers the filter and the (beer_name, id) ordering, so no filesort is needed
+create index beer_style_name_id_idx on beer (beer_style, beer_name, id);
+
+create index beer_upc_idx on beer (upc);
+
+-- InnoDB already keeps an implicit index behind every foreign key, these make them explicit and named
+create index beer_order_customer_id_idx on beer_order (customer_id);
+
+create index beer_order_line_beer_order_id_idx on beer_order_line (beer_order_id);
@@ -0,0 +1,2 @@
+-- customer listing - sorted by name, with the id as keyset (seek) pagination tie-breaker
+create index customer_name_id_idx on customer (name, id);
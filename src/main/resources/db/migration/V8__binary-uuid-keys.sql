@@ -0,0 +1,153 @@
+-- Stores every uuid key as binary(16) instead of varchar(36) (see TimeOrderedUuidGenerator).
+-- Each table is rebuilt as <table>_bin with the same columns and the existing ids converted, then swapped in.
+-- UUID_TO_BIN without the swap flag keeps the byte order Hibernate uses for UUID <-> binary, and the ids keep
+-- their value - only new rows get time-ordered ids.
+
+create table beer_bin (
+                      beer_style smallint not null check (beer_style between 0 and 9),
+                      price decimal(38,2) not null,
+                      quantity_on_hand integer,
+                      version integer,
+                      created_date datetime(6),
+                      updated_date datetime(6),
+                      id binary(16) not null,
+                      beer_name varchar(50) not null,
+                      upc varchar(255) not null,
+                      primary key (id)
+) engine=InnoDB;
+
+insert into beer_bin (beer_style, price, quantity_on_hand, version, created_date, updated_date, id, beer_name, upc)
+select beer_style, price, quantity_on_hand, version, created_date, updated_date, uuid_to_bin(id), beer_name, upc
+from beer;
+
+create table customer_bin (
+                          version integer,
+                          created_date datetime(6),
+                          updated_date datetime(6),
+                          id binary(16) not null,
+                          name varchar(255),
+                          email varchar(255),
+                          primary key (id)
+) engine=InnoDB;
+
+insert into customer_bin (version, created_date, updated_date, id, name, email)
+select version, created_date, updated_date, uuid_to_bin(id), name, email
+from customer;
+
+create table beer_order_bin
+(
+    id                     binary(16) NOT NULL,
+    created_date           datetime(6)  DEFAULT NULL,
+    customer_ref           varchar(255) DEFAULT NULL,
+    last_modified_date     datetime(6)  DEFAULT NULL,
+    version                bigint       DEFAULT NULL,
+    customer_id            binary(16)   DEFAULT NULL,
+    beer_order_shipment_id binary(16)   DEFAULT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+insert into beer_order_bin (id, created_date, customer_ref, last_modified_date, version, customer_id,
+                            beer_order_shipment_id)
+select uuid_to_bin(id), created_date, customer_ref, last_modified_date, version, uuid_to_bin(customer_id),
+       uuid_to_bin(beer_order_shipment_id)
+from beer_order;
+
+create table beer_order_line_bin
+(
+    id                 binary(16) NOT NULL,
+    beer_id            binary(16) DEFAULT NULL,
+    created_date       datetime(6) DEFAULT NULL,
+    last_modified_date datetime(6) DEFAULT NULL,
+    order_quantity     int         DEFAULT NULL,
+    quantity_allocated int         DEFAULT NULL,
+    version            bigint      DEFAULT NULL,
+    beer_order_id      binary(16) DEFAULT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+insert into beer_order_line_bin (id, beer_id, created_date, last_modified_date, order_quantity, quantity_allocated,
+                                 version, beer_order_id)
+select uuid_to_bin(id), uuid_to_bin(beer_id), created_date, last_modified_date, order_quantity, quantity_allocated,
+       version, uuid_to_bin(beer_order_id)
+from beer_order_line;
+
+create table category_bin
+(
+    id                 binary(16) NOT NULL PRIMARY KEY,
+    description        varchar(50),
+    created_date       timestamp,
+    last_modified_date datetime(6) DEFAULT NULL,
+    version            bigint      DEFAULT NULL
+) ENGINE = InnoDB;
+
+insert into category_bin (id, description, created_date, last_modified_date, version)
+select uuid_to_bin(id), description, created_date, last_modified_date, version
+from category;
+
+create table beer_category_bin
+(
+    beer_id     binary(16) NOT NULL,
+    category_id binary(16) NOT NULL,
+    primary key (beer_id, category_id)
+) ENGINE = InnoDB;
+
+insert into beer_category_bin (beer_id, category_id)
+select uuid_to_bin(beer_id), uuid_to_bin(category_id)
+from beer_category;
+
+CREATE TABLE beer_order_shipment_bin
+(
+    id                 binary(16) NOT NULL PRIMARY KEY,
+    beer_order_id      binary(16) UNIQUE,
+    tracking_number    VARCHAR(50),
+    created_date       TIMESTAMP,
+    last_modified_date DATETIME(6) DEFAULT NULL,
+    version            BIGINT      DEFAULT NULL
+) ENGINE = InnoDB;
+
+insert into beer_order_shipment_bin (id, beer_order_id, tracking_number, created_date, last_modified_date, version)
+select uuid_to_bin(id), uuid_to_bin(beer_order_id), tracking_number, created_date, last_modified_date, version
+from beer_order_shipment;
+
+-- beer_order and beer_order_shipment reference each other, so the old tables can only go without the checks
+set foreign_key_checks = 0;
+
+drop table beer_category, beer_order_line, beer_order_shipment, beer_order, category, customer, beer;
+
+set foreign_key_checks = 1;
+
+rename table beer_bin to beer,
+    customer_bin to customer,
+    beer_order_bin to beer_order,
+    beer_order_line_bin to beer_order_line,
+    category_bin to category,
+    beer_category_bin to beer_category,
+    beer_order_shipment_bin to beer_order_shipment;
+
+-- the constraints and indexes of V3 - V7, on the binary columns
+alter table beer_order
+    add constraint beer_order_customer_fk foreign key (customer_id) references customer (id),
+    add constraint bos_shipment_fk foreign key (beer_order_shipment_id) references beer_order_shipment (id);
+
+alter table beer_order_line
+    add constraint beer_order_line_beer_order_fk foreign key (beer_order_id) references beer_order (id),
+    add constraint beer_order_line_beer_fk foreign key (beer_id) references beer (id);
+
+alter table beer_category
+    add constraint pc_beer_id_fk foreign key (beer_id) references beer (id),
+    add constraint pc_category_id_fk foreign key (category_id) references category (id);
+
+alter table beer_order_shipment
+    add constraint bos_pk foreign key (beer_order_id) references beer_order (id);
+
+create index beer_name_id_idx on beer (beer_name, id);
+
+create index beer_style_name_id_idx on beer (beer_style, beer_name, id);
+
+create index beer_upc_idx on beer (upc);
+
+create index beer_order_customer_id_idx on beer_order (customer_id);
+
+create index beer_order_line_beer_order_id_idx on beer_order_line (beer_order_id);
+
+create index customer_name_id_idx on customer (name, id);
@@ -0,0 +1,11 @@
+-- Striped stock of hot beers (see BeerInventoryServiceImpl) - a striped beer's stock is quantity_on_hand plus the
+-- sum of its stripes, and stock_stripes is the number of stripe rows it has (null when it isn't striped)
+alter table beer add column stock_stripes integer;
+
+create table beer_stock_stripe (
+                      beer_id binary(16) not null,
+                      stripe integer not null,
+                      quantity_on_hand integer not null,
+                      primary key (beer_id, stripe),
+                      constraint beer_stock_stripe_beer_fk foreign key (beer_id) references beer (id) on delete cascade
+) engine=InnoDB;
@@ -0,0 +1,36 @@
+package guru.springframework.spring6restmvc;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the SQL Hibernate prepares on the current thread while recording - registered for all tests through
+ * {@code hibernate.session_factory.statement_inspector} in config/application.properties. A JDBC batch is prepared
+ * once, so it counts as one statement however many rows it sends.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+    public static void start() {
+        statements.set(new ArrayList<>());
+    }
+
+    public static List<String> stop() {
+        List<String> recorded = statements.get();
+        statements.remove();
+        return recorded == null ? List.of() : recorded;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> recorded = statements.get();
+
+        if (recorded != null)
+            recorded.add(sql);
+
+        return sql;
+    }
+}
@@ -4,11 +4,17 @@ import guru.springframework.spring6restmvc.repositories.BeerRepository;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import guru.springframework.spring6restmvc.services.BeerCsvService;
 import guru.springframework.spring6restmvc.services.BeerCsvServiceImpl;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,18 +32,38 @@ class BootstrapDataTest {
     @Autowired
     BeerCsvService csvService;
 
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EntityManager entityManager;
+
     BootstrapData bootstrapData;
 
+    List<Object> publishedEvents = new ArrayList<>();
+
     @BeforeEach
     void setUp() {
-        bootstrapData = new BootstrapData(beerRepository, customerRepository, csvService);
+        bootstrapData = new BootstrapData(beerRepository, customerRepository, csvService, transactionTemplate,
+                entityManager, publishedEvents::add, false);
     }
 
     @Test
     void testRun() throws Exception {
-        bootstrapData.run();
+        bootstrapData.seed();
 
         assertThat(beerRepository.count()).isEqualTo(2413);
         assertThat(customerRepository.count()).isEqualTo(3);
     }
+
+    @Test
+    void testNotReadyUntilSeeded() throws Exception {
+        assertThat(bootstrapData.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(publishedEvents).isEmpty();
+
+        bootstrapData.seed();
+
+        assertThat(bootstrapData.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(publishedEvents).singleElement().isInstanceOf(BootstrapCompletedEvent.class);
+    }
 }
\ No newline at end of file
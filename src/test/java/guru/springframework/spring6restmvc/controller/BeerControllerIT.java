@@ -1,11 +1,26 @@
 package guru.springframework.spring6restmvc.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import guru.springframework.spring6restmvc.entities.BeerOrderShipment;
+import guru.springframework.spring6restmvc.entities.Category;
 import guru.springframework.spring6restmvc.mappers.BeerMapper;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
 import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.ImportStatus;
+import guru.springframework.spring6restmvc.model.PurgeResult;
+import guru.springframework.spring6restmvc.repositories.BeerOrderRepository;
 import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CategoryRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import guru.springframework.spring6restmvc.services.BeerService;
 import org.hamcrest.core.IsNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -13,9 +28,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.web.servlet.MockMvc;
@@ -24,6 +43,9 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,8 +58,7 @@ import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 class BeerControllerIT {
@@ -54,6 +75,21 @@ class BeerControllerIT {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerOrderRepository beerOrderRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
     @Autowired
     WebApplicationContext wac;
 
@@ -149,6 +185,251 @@ class BeerControllerIT {
                 .andExpect(jsonPath("$.content.size()", is(310)));
     }
 
+    @Test
+    void testListBeersByStyleAndNameKeysetWalksAllPages() throws Exception {
+        String after = "";
+        int total = 0;
+        int pages = 0;
+
+        do {
+            MvcResult result = mockMvc.perform(get(BeerController.BEER_PATH)
+                            .with(BeerControllerTest.jwtRequestPostProcessor)
+                            .queryParam("beerName", "IPA")
+                            .queryParam("beerStyle", BeerStyle.IPA.name())
+                            .queryParam("after", after)
+                            .queryParam("pageSize", "50"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            CursorPage<?> page = objectMapper.readValue(result.getResponse().getContentAsString(), CursorPage.class);
+            total += page.getContent().size();
+            pages++;
+            after = page.getNext();
+        } while (after != null);
+
+        assertThat(total).isEqualTo(310);
+        assertThat(pages).isEqualTo(7);
+    }
+
+    @Test
+    void testListBeersByStyleAndNameTotalsNone() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("beerName", "IPA")
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("totals", "none")
+                        .queryParam("pageSize", "300"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(300)))
+                .andExpect(jsonPath("$.last", is(false)))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    void testListBeersByStyleAndNameTotalsEstimate() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("beerName", "IPA")
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("totals", "estimate")
+                        .queryParam("pageSize", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(50)))
+                .andExpect(jsonPath("$.totalElements", is(310)));
+    }
+
+    @Test
+    void testListBeersKeysetBadCursor() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testListBeersKeysetPageSizeZero() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("after", "")
+                        .queryParam("pageSize", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetBeerByIdNotModified() throws Exception {
+        Beer beer = beerRepository.findAll().get(0);
+
+        MvcResult result = mockMvc.perform(get(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG,
+                        "\"" + beer.getId() + "-" + beer.getVersion() + "-" + beer.getQuantityOnHand() + "\""))
+                .andReturn();
+
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        // a weak validator of the same version matches as well
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetBeerByIdStaleETag() throws Exception {
+        Beer beer = beerRepository.findAll().get(0);
+
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH,
+                                "\"" + beer.getId() + "-" + (beer.getVersion() + 1) + "-" + beer.getQuantityOnHand() + "\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(beer.getId().toString())));
+    }
+
+    @Test
+    void testGetBeerByIdNotFoundConditional() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, UUID.randomUUID())
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListBeersNotModified() throws Exception {
+        MvcResult result = mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("pageSize", "50"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("W/\"");
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("pageSize", "50")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // another page has other contents, so the same tag doesn't match it
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("beerStyle", BeerStyle.IPA.name())
+                        .queryParam("pageSize", "50")
+                        .queryParam("pageNumber", "2")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testExportNdjson() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BeerController.NDJSON))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize((int) beerRepository.count());
+        assertThat(lines).allMatch(line -> line.startsWith("{"));
+
+        BeerDTO first = objectMapper.readValue(lines[0], BeerDTO.class);
+        assertThat(first.getId()).isNotNull();
+        assertThat(first.getBeerName()).isNotBlank();
+    }
+
+    @Test
+    void testExportCsv() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BeerController.CSV))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines[0]).startsWith("id,version,beerName,beerStyle");
+        assertThat(lines).hasSize((int) beerRepository.count() + 1);
+    }
+
+    @Test
+    void testImportCsv() throws Exception {
+        String csv = """
+                "row","count.x","abv","ibu","id","beer","style","brewery_id","ounces","style2","count.y","brewery","city","state","label"
+                "1",1,0.05,NA,1,"Import Test Lager","American Pale Lager",1,12,NA,1,"Brewery","City","OR","Label"
+                "2",2,0.06,NA,2,"Import Test IPA","American IPA",1,12,NA,1,"Brewery","City","OR","Label"
+                "3",3,0.07,NA,3,"Import Test Stout","Oatmeal Stout",1,12,NA,1,"Brewery","City","OR","Label"
+                """;
+
+        MvcResult result = mockMvc.perform(multipart(BeerController.BEER_IMPORT_PATH)
+                        .file(new MockMultipartFile("file", "beers.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)))
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn();
+
+        String location = result.getResponse().getHeader("Location");
+        JsonNode job = waitForImport(location);
+
+        try {
+            assertThat(job.get("status").asText()).isEqualTo(ImportStatus.COMPLETED.name());
+            assertThat(job.get("rowsImported").asLong()).isEqualTo(3);
+            assertThat(job.get("progress").asInt()).isEqualTo(100);
+
+            Page<Beer> imported = beerRepository.findAllByBeerNameIsLikeIgnoreCase("Import Test %", Pageable.unpaged());
+            assertThat(imported.getContent())
+                    .extracting(Beer::getBeerStyle)
+                    .containsExactlyInAnyOrder(BeerStyle.LAGER, BeerStyle.IPA, BeerStyle.STOUT);
+        } finally {
+            beerRepository.findAllByBeerNameIsLikeIgnoreCase("Import Test %", Pageable.unpaged())
+                    .forEach(beer -> beerService.deleteById(beer.getId()));
+        }
+    }
+
+    private JsonNode waitForImport(String location) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            MvcResult result = mockMvc.perform(get(location).with(BeerControllerTest.jwtRequestPostProcessor))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            JsonNode job = objectMapper.readTree(result.getResponse().getContentAsString());
+
+            if (!ImportStatus.RUNNING.name().equals(job.get("status").asText()))
+                return job;
+
+            Thread.sleep(100);
+        }
+
+        throw new AssertionError("Import did not finish: " + location);
+    }
+
+    @Test
+    void testReadinessAfterSeeding() throws Exception {
+        // probes are polled without a token
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("UP")));
+    }
+
     @Test
     void testNoAuth() throws Exception {
         mockMvc.perform(get(BeerController.BEER_PATH)
@@ -197,6 +478,47 @@ class BeerControllerIT {
         System.out.println(result.getResponse().getContentAsString());
     }
 
+    @Rollback
+    @Transactional
+    @Test
+    void testPatchBeerWithVersion() {
+        Beer beer = beerRepository.findAll().get(0);
+        Integer version = beer.getVersion();
+
+        BeerDTO changes = BeerDTO.builder().version(version).price(new BigDecimal("4.56")).build();
+        beerController.updateBeerPatchById(beer.getId(), changes);
+
+        Beer patchedBeer = beerRepository.findById(beer.getId()).orElseThrow();
+        assertThat(patchedBeer.getPrice()).isEqualByComparingTo("4.56");
+        assertThat(patchedBeer.getBeerName()).isEqualTo(beer.getBeerName());
+        assertThat(patchedBeer.getVersion()).isEqualTo(version + 1);
+
+        // the version the client sent is outdated now
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> beerController.updateBeerPatchById(beer.getId(), changes));
+    }
+
+    @Test
+    void testPatchBeerNotFound() {
+        assertThrows(NotFoundException.class, () -> beerController.updateBeerPatchById(UUID.randomUUID(),
+                BeerDTO.builder().beerName("Unknown").build()));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testUpdateBeerStaleVersion() throws Exception {
+        Beer beer = beerRepository.findAll().get(0);
+        BeerDTO beerDTO = beerMapper.beerToBeerDto(beer);
+        beerDTO.setVersion(beer.getVersion() + 1);
+
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beerDTO)))
+                .andExpect(status().isConflict());
+    }
+
     @Rollback
     @Transactional
     @Test
@@ -271,7 +593,7 @@ class BeerControllerIT {
     @Test
     void testBeerIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-            beerController.getBeerById(UUID.randomUUID());
+            beerController.getBeerById(UUID.randomUUID(), null);
         });
     }
 
@@ -279,24 +601,163 @@ class BeerControllerIT {
     void testGetById() {
         Beer beer = beerRepository.findAll().get(0);
 
-        BeerDTO dto = beerController.getBeerById(beer.getId());
+        BeerDTO dto = beerController.getBeerById(beer.getId(), null).getBody();
 
         assertThat(dto).isNotNull();
     }
 
     @Test
     void testListBeers() {
-        Page<BeerDTO> dtos = beerController.listBeers(null, null, false, 1, 2413);
+        Page<BeerDTO> dtos = beerController.listBeers(null, null, false, 1, 2413, null).getBody();
 
         assertThat(dtos.getContent().size()).isEqualTo(1000);
     }
 
+    @Rollback
+    @Transactional
+    @Test
+    void testBatchSaveBeers() {
+        List<Beer> existing = beerRepository.findAll(Pageable.ofSize(2)).getContent();
+
+        BeerDTO newBeer = BeerDTO.builder().beerName("Batch Beer").beerStyle(BeerStyle.ALE).upc("batch-1")
+                .price(new BigDecimal("7.50")).quantityOnHand(12).build();
+        BeerDTO invalid = newBeer.toBuilder().upc("").build();
+        BeerDTO update = beerMapper.beerToBeerDto(existing.get(0)).toBuilder().price(new BigDecimal("1.23")).build();
+        BeerDTO stale = beerMapper.beerToBeerDto(existing.get(1)).toBuilder()
+                .version(existing.get(1).getVersion() + 1).build();
+        BeerDTO unknown = newBeer.toBuilder().id(UUID.randomUUID()).build();
+
+        List<BatchItemResult> results = beerController.batchSaveBeers(List.of(newBeer, invalid, update, stale, unknown));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(BatchItemStatus.CREATED,
+                BatchItemStatus.INVALID, BatchItemStatus.UPDATED, BatchItemStatus.CONFLICT, BatchItemStatus.NOT_FOUND);
+        assertThat(results).extracting(BatchItemResult::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(results.get(1).getError()).startsWith("upc:");
+
+        Beer created = beerRepository.findById(results.get(0).getId()).orElseThrow();
+        assertThat(created.getBeerName()).isEqualTo("Batch Beer");
+
+        Beer updated = beerRepository.findById(update.getId()).orElseThrow();
+        assertThat(updated.getPrice()).isEqualByComparingTo("1.23");
+        assertThat(results.get(2).getVersion()).isEqualTo(update.getVersion() + 1);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testBatchSaveBeersSameIdTwice() {
+        Beer existing = beerRepository.findAll(Pageable.ofSize(1)).getContent().get(0);
+
+        BeerDTO first = beerMapper.beerToBeerDto(existing).toBuilder().price(new BigDecimal("2.34")).build();
+        BeerDTO second = first.toBuilder().price(new BigDecimal("3.45")).build();
+
+        List<BatchItemResult> results = beerController.batchSaveBeers(List.of(first, second));
+
+        assertThat(results).extracting(BatchItemResult::getStatus)
+                .containsExactly(BatchItemStatus.UPDATED, BatchItemStatus.CONFLICT);
+        assertThat(results.get(1).getId()).isEqualTo(existing.getId());
+        assertThat(results.get(1).getError()).isEqualTo("Same id as item 0");
+
+        Beer updated = beerRepository.findById(existing.getId()).orElseThrow();
+        assertThat(updated.getPrice()).isEqualByComparingTo("2.34");
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testBatchSaveBeersInChunks() {
+        long countBefore = beerRepository.count();
+        List<BeerDTO> beers = new ArrayList<>();
+
+        // more than two chunks
+        for (int i = 0; i < 1200; i++) {
+            beers.add(BeerDTO.builder().beerName("Batch Beer " + i).beerStyle(BeerStyle.LAGER).upc("batch-" + i)
+                    .price(BigDecimal.TEN).build());
+        }
+
+        List<BatchItemResult> results = beerController.batchSaveBeers(beers);
+
+        assertThat(results).hasSize(1200).allMatch(result -> result.getStatus() == BatchItemStatus.CREATED);
+        assertThat(beerRepository.count()).isEqualTo(countBefore + 1200);
+    }
+
+    @Test
+    void testBatchSaveBeersTooMany() {
+        List<BeerDTO> beers = new ArrayList<>();
+
+        for (int i = 0; i < 10001; i++) {
+            beers.add(BeerDTO.builder().build());
+        }
+
+        assertThrows(BadRequestException.class, () -> beerController.batchSaveBeers(beers));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPurgeBeers() {
+        Category category = categoryRepository.save(Category.builder().description("Purge Test").build());
+
+        Beer soldOut = purgeTestBeer("Sold Out", 0);
+        soldOut.getCategories().add(category); // only one side - both map the join table
+        Beer noStock = purgeTestBeer("No Stock", null);
+        Beer inStock = purgeTestBeer("In Stock", 5);
+        Beer ordered = purgeTestBeer("Ordered", 0);
+
+        BeerOrder beerOrder = beerOrderRepository.save(BeerOrder.builder()
+                .customerRef("Purge test")
+                .customer(customerRepository.findAll().get(0))
+                .beerOrderShipment(BeerOrderShipment.builder().trackingNumber("purge-1").build())
+                .build());
+        entityManager.persist(BeerOrderLine.builder().beerOrder(beerOrder).beer(ordered).orderQuantity(1)
+                .unitPrice(ordered.getPrice()).build());
+
+        PurgeResult result = beerController.purgeBeers(BeerStyle.SAISON, 0);
+
+        assertThat(result.getDeleted()).isGreaterThanOrEqualTo(2);
+        assertThat(result.getRetained()).isGreaterThanOrEqualTo(1);
+
+        assertThat(beerRepository.findById(soldOut.getId())).isEmpty();
+        assertThat(beerRepository.findById(noStock.getId())).isEmpty();
+        assertThat(beerRepository.findById(inStock.getId())).isPresent();
+        assertThat(beerRepository.findById(ordered.getId())).isPresent();
+        assertThat(categoryRepository.findById(category.getId()).orElseThrow().getBeers()).isEmpty();
+
+        // nothing left that can go
+        assertThat(beerController.purgeBeers(BeerStyle.SAISON, 0).getDeleted()).isZero();
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testDeleteOrderedBeerConflict() throws Exception {
+        Beer ordered = purgeTestBeer("Ordered", 0);
+
+        BeerOrder beerOrder = beerOrderRepository.save(BeerOrder.builder()
+                .customerRef("Delete test")
+                .customer(customerRepository.findAll().get(0))
+                .beerOrderShipment(BeerOrderShipment.builder().trackingNumber("delete-1").build())
+                .build());
+        entityManager.persist(BeerOrderLine.builder().beerOrder(beerOrder).beer(ordered).orderQuantity(1)
+                .unitPrice(ordered.getPrice()).build());
+        entityManager.flush();
+
+        mockMvc.perform(delete(BeerController.BEER_PATH_ID, ordered.getId())
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isConflict());
+    }
+
+    private Beer purgeTestBeer(String beerName, Integer quantityOnHand) {
+        return beerRepository.save(Beer.builder().beerName(beerName).beerStyle(BeerStyle.SAISON).upc("purge")
+                .price(BigDecimal.TEN).quantityOnHand(quantityOnHand).build());
+    }
+
     @Rollback
     @Transactional
     @Test
     void testEmptyList() {
         beerRepository.deleteAll();
-        Page<BeerDTO> dtos = beerController.listBeers(null, null, false, 1, 25);
+        Page<BeerDTO> dtos = beerController.listBeers(null, null, false, 1, 25, null).getBody();
 
         assertThat(dtos.getContent().size()).isEqualTo(0);
     }
@@ -2,7 +2,19 @@ package guru.springframework.spring6restmvc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6restmvc.config.SpringSecConfig;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
 import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerSalesDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.PurgeResult;
+import guru.springframework.spring6restmvc.model.SalesReportDTO;
+import guru.springframework.spring6restmvc.model.TotalsMode;
+import guru.springframework.spring6restmvc.services.BeerBatchService;
+import guru.springframework.spring6restmvc.services.BeerExportService;
+import guru.springframework.spring6restmvc.services.BeerImportService;
+import guru.springframework.spring6restmvc.services.BeerInventoryService;
+import guru.springframework.spring6restmvc.services.BeerSalesService;
 import guru.springframework.spring6restmvc.services.BeerService;
 import guru.springframework.spring6restmvc.services.BeerServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,14 +24,18 @@ import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -27,6 +43,7 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
@@ -47,6 +64,21 @@ class BeerControllerTest {
     @MockitoBean
     BeerService beerService;
 
+    @MockitoBean
+    BeerExportService beerExportService;
+
+    @MockitoBean
+    BeerImportService beerImportService;
+
+    @MockitoBean
+    BeerBatchService beerBatchService;
+
+    @MockitoBean
+    BeerInventoryService beerInventoryService;
+
+    @MockitoBean
+    BeerSalesService beerSalesService;
+
     BeerServiceImpl beerServiceImpl;
 
     // initializing it this way allows us to reuse it in other methods as well
@@ -77,6 +109,8 @@ class BeerControllerTest {
         Map<String, Object> beerMap = new HashMap<>();
         beerMap.put("beerName", "New Name");
 
+        given(beerService.patchBeerById(any(), any())).willReturn(true);
+
         mockMvc.perform(patch(BeerController.BEER_PATH_ID, beer.getId())
                         .with(jwtRequestPostProcessor)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -115,7 +149,7 @@ class BeerControllerTest {
                 null, null, false, 1, 25
         ).getContent().get(0);
 
-        given(beerService.updateBeerById(any(), any())).willReturn(Optional.of(beer));
+        given(beerService.updateBeerById(any(), any())).willReturn(true);
 
         mockMvc.perform(
                 put(BeerController.BEER_PATH_ID, beer.getId())
@@ -135,7 +169,7 @@ class BeerControllerTest {
         ).getContent().get(0);
         beer.setBeerName("");
 
-        given(beerService.updateBeerById(any(), any())).willReturn(Optional.of(beer));
+        given(beerService.updateBeerById(any(), any())).willReturn(true);
 
         mockMvc.perform(
                         put(BeerController.BEER_PATH_ID, beer.getId())
@@ -206,6 +240,37 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.content.length()", is(3)));
     }
 
+    @Test
+    void testListBeersTotalsNone() throws Exception {
+        given(beerService.listBeers(any(), any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeers(null, null, false, 1, 25, TotalsMode.NONE));
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("totals", "NONE")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .with(jwtRequestPostProcessor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(3)));
+
+        verify(beerService).listBeers(any(), any(), any(), any(), any(), eq(TotalsMode.NONE));
+    }
+
+    @Test
+    void testListBeersAfter() throws Exception {
+        given(beerService.listBeersAfter(any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeersAfter(null, null, false, "", 25));
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("after", "")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .with(jwtRequestPostProcessor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(3)))
+                .andExpect(jsonPath("$.hasNext", is(false)));
+
+        verify(beerService).listBeersAfter(any(), any(), any(), any(), any());
+    }
+
     @Test
     void getBeerByIdNotFound() throws Exception {
 
@@ -236,4 +301,220 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.beerName", is(testBeer.getBeerName())));
 
     }
+
+    @Test
+    void testExportUnsupportedFormat() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_EXPORT_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .queryParam("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testPatchBeerNotFound() throws Exception {
+        given(beerService.patchBeerById(any(), any())).willReturn(false);
+
+        mockMvc.perform(patch(BeerController.BEER_PATH_ID, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"beerName\": \"New Name\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testUpdateBeerVersionConflict() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers(null, null, false, 1, 25).getContent().get(0);
+
+        given(beerService.updateBeerById(any(), any()))
+                .willThrow(new ObjectOptimisticLockingFailureException("Beer", beer.getId()));
+
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, beer.getId())
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beer)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testBatchSaveBeers() throws Exception {
+        List<BeerDTO> beers = beerServiceImpl.listBeers(null, null, false, 1, 25).getContent();
+
+        given(beerBatchService.saveBeers(any())).willReturn(List.of(
+                BatchItemResult.builder().index(0).status(BatchItemStatus.UPDATED).id(beers.get(0).getId()).build(),
+                BatchItemResult.builder().index(1).status(BatchItemStatus.NOT_FOUND).id(beers.get(1).getId()).build(),
+                BatchItemResult.builder().index(2).status(BatchItemStatus.INVALID).error("upc: must not be blank").build()));
+
+        mockMvc.perform(post(BeerController.BEER_BATCH_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beers)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[0].status", is("UPDATED")))
+                .andExpect(jsonPath("$[2].error", is("upc: must not be blank")));
+
+        verify(beerBatchService).saveBeers(any());
+    }
+
+    @Test
+    void testBatchSaveBeersTooMany() throws Exception {
+        given(beerBatchService.saveBeers(any())).willThrow(new BadRequestException("too many"));
+
+        mockMvc.perform(post(BeerController.BEER_BATCH_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAdjustInventory() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers(null, null, false, 1, 25).getContent().get(0);
+        given(beerInventoryService.adjustQuantityOnHand(beer.getId(), -2))
+                .willReturn(Optional.of(beer.toBuilder().quantityOnHand(40).build()));
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, beer.getId())
+                        .with(jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -2}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantityOnHand", is(40)));
+    }
+
+    @Test
+    void testAdjustInventoryNotFound() throws Exception {
+        given(beerInventoryService.adjustQuantityOnHand(any(UUID.class), eq(1))).willReturn(Optional.empty());
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": 1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testAdjustInventoryInsufficientStock() throws Exception {
+        given(beerInventoryService.adjustQuantityOnHand(any(UUID.class), eq(-500)))
+                .willThrow(new InsufficientStockException());
+
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -500}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testAdjustInventoryWithoutDelta() throws Exception {
+        mockMvc.perform(post(BeerController.BEER_INVENTORY_PATH, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStripeInventory() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        given(beerInventoryService.stripeQuantityOnHand(beerId, 8)).willReturn(true);
+
+        mockMvc.perform(put(BeerController.BEER_INVENTORY_STRIPES_PATH, beerId)
+                        .with(jwtRequestPostProcessor)
+                        .param("stripes", "8"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(put(BeerController.BEER_INVENTORY_STRIPES_PATH, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor)
+                        .param("stripes", "8"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testPurgeBeers() throws Exception {
+        given(beerBatchService.purgeBeers(BeerStyle.IPA, 0))
+                .willReturn(PurgeResult.builder().deleted(12).retained(3).build());
+
+        mockMvc.perform(post(BeerController.BEER_PURGE_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .param("beerStyle", "IPA")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(12)))
+                .andExpect(jsonPath("$.retained", is(3)));
+
+        verify(beerBatchService).purgeBeers(BeerStyle.IPA, 0);
+    }
+
+    @Test
+    void testGetSalesReport() throws Exception {
+        LocalDate from = LocalDate.of(2026, 9, 1);
+        LocalDate to = LocalDate.of(2026, 9, 30);
+        UUID beerId = UUID.randomUUID();
+
+        given(beerSalesService.getSalesReport(from, to, 5)).willReturn(SalesReportDTO.builder()
+                .from(from)
+                .to(to)
+                .unitsSold(42)
+                .topBeers(List.of(new BeerSalesDTO(beerId, "Galaxy Cat", BeerStyle.PALE_ALE, 42)))
+                .styles(List.of())
+                .build());
+
+        mockMvc.perform(get(BeerController.BEER_SALES_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .param("from", "2026-09-01")
+                        .param("to", "2026-09-30")
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.unitsSold", is(42)))
+                .andExpect(jsonPath("$.topBeers[0].beerId", is(beerId.toString())))
+                .andExpect(jsonPath("$.topBeers[0].unitsSold", is(42)));
+    }
+
+    @Test
+    void testGetSalesReportFromAfterTo() throws Exception {
+        given(beerSalesService.getSalesReport(any(), any(), eq(10)))
+                .willThrow(new BadRequestException("from 2026-09-30 is after to 2026-09-01"));
+
+        mockMvc.perform(get(BeerController.BEER_SALES_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .param("from", "2026-09-30")
+                        .param("to", "2026-09-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testImportJobNotFound() throws Exception {
+        given(beerImportService.getImportJob(any(UUID.class))).willReturn(Optional.empty());
+
+        mockMvc.perform(get(BeerController.BEER_IMPORT_PATH_ID, UUID.randomUUID()).with(jwtRequestPostProcessor))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+
+        BeerDTO testBeer = beerServiceImpl.listBeers(
+                null, null, false, 1, 25
+        ).getContent().get(0);
+
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+        String etag = "\"" + testBeer.getId() + "-" + testBeer.getVersion() + "-" + testBeer.getQuantityOnHand() + "\"";
+
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .with(jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        // the body of a stale tag is the beer the current tag was made of
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .with(jwtRequestPostProcessor)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + testBeer.getId() + "-0-0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(jsonPath("$.version", is(testBeer.getVersion())));
+    }
 }
\ No newline at end of file
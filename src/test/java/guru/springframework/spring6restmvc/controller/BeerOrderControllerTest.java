@@ -0,0 +1,130 @@
+package guru.springframework.spring6restmvc.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.spring6restmvc.config.SpringSecConfig;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.services.BeerOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static guru.springframework.spring6restmvc.controller.BeerControllerTest.jwtRequestPostProcessor;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(BeerOrderController.class)
+@Import(SpringSecConfig.class)
+class BeerOrderControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockitoBean
+    BeerOrderService beerOrderService;
+
+    @Test
+    void testPlaceOrder() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        given(beerOrderService.placeOrder(any(BeerOrderCreateDTO.class)))
+                .willReturn(BeerOrderDTO.builder().id(orderId).build());
+
+        BeerOrderCreateDTO order = new BeerOrderCreateDTO(UUID.randomUUID(), "ref",
+                List.of(new BeerOrderLineCreateDTO(UUID.randomUUID(), 2)));
+
+        mockMvc.perform(post(BeerOrderController.BEER_ORDER_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", BeerOrderController.BEER_ORDER_PATH + "/" + orderId))
+                .andExpect(jsonPath("$.id", is(orderId.toString())));
+    }
+
+    @Test
+    void testPlaceOrderWithoutLines() throws Exception {
+        BeerOrderCreateDTO order = new BeerOrderCreateDTO(UUID.randomUUID(), "ref", List.of());
+
+        mockMvc.perform(post(BeerOrderController.BEER_ORDER_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isBadRequest());
+
+        verify(beerOrderService, never()).placeOrder(any());
+    }
+
+    @Test
+    void testPlaceOrderUnknownBeer() throws Exception {
+        given(beerOrderService.placeOrder(any(BeerOrderCreateDTO.class)))
+                .willThrow(new BadRequestException("Unknown beers"));
+
+        BeerOrderCreateDTO order = new BeerOrderCreateDTO(UUID.randomUUID(), null,
+                List.of(new BeerOrderLineCreateDTO(UUID.randomUUID(), 1)));
+
+        mockMvc.perform(post(BeerOrderController.BEER_ORDER_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetOrderById() throws Exception {
+        UUID orderId = UUID.randomUUID();
+        given(beerOrderService.getOrderById(orderId))
+                .willReturn(Optional.of(BeerOrderDTO.builder().id(orderId).customerRef("ref").build()));
+
+        mockMvc.perform(get(BeerOrderController.BEER_ORDER_PATH_ID, orderId)
+                        .with(jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(orderId.toString())))
+                .andExpect(jsonPath("$.customerRef", is("ref")));
+    }
+
+    @Test
+    void testGetOrderByIdNotFound() throws Exception {
+        given(beerOrderService.getOrderById(any(UUID.class))).willReturn(Optional.empty());
+
+        mockMvc.perform(get(BeerOrderController.BEER_ORDER_PATH_ID, UUID.randomUUID())
+                        .with(jwtRequestPostProcessor))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListOrdersOfCustomer() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        given(beerOrderService.listOrders(eq(customerId), any(), any()))
+                .willReturn(new PageImpl<>(List.of(BeerOrderDTO.builder().customerId(customerId).build())));
+
+        mockMvc.perform(get(BeerOrderController.BEER_ORDER_PATH)
+                        .with(jwtRequestPostProcessor)
+                        .queryParam("customerId", customerId.toString())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(1)))
+                .andExpect(jsonPath("$.content[0].customerId", is(customerId.toString())));
+    }
+}
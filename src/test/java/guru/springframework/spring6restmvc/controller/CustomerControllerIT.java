@@ -1,17 +1,30 @@
 package guru.springframework.spring6restmvc.controller;
 
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderShipment;
 import guru.springframework.spring6restmvc.entities.Customer;
 import guru.springframework.spring6restmvc.mappers.CustomerMapper;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.repositories.BeerOrderRepository;
 import guru.springframework.spring6restmvc.repositories.CustomerRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,6 +40,9 @@ class CustomerControllerIT {
     @Autowired
     CustomerController customerController;
 
+    @Autowired
+    BeerOrderRepository beerOrderRepository;
+
     @Autowired
     CustomerMapper customerMapper;
 
@@ -42,6 +58,19 @@ class CustomerControllerIT {
         assertThat(customerRepository.findById(customer.getId()).isEmpty());
     }
 
+    @Rollback
+    @Transactional
+    @Test
+    void testDeleteCustomerWithOrdersConflict() {
+        Customer customer = customerRepository.save(Customer.builder().name("Ordered").build());
+        beerOrderRepository.saveAndFlush(BeerOrder.builder()
+                .customer(customer)
+                .beerOrderShipment(BeerOrderShipment.builder().build())
+                .build());
+
+        assertThrows(StillReferencedException.class, () -> customerController.deleteCustomerById(customer.getId()));
+    }
+
     @Test
     void testDeleteNotFound() {
         assertThrows(NotFoundException.class, () -> {
@@ -69,12 +98,35 @@ class CustomerControllerIT {
         customerDTO.setVersion(null);
         final String customerName = "UPDATED";
         customerDTO.setName(customerName);
+        LocalDateTime beforeUpdate = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
 
         ResponseEntity responseEntity = customerController.updateCustomerById(customer.getId(), customerDTO);
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(204));
 
         Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
         assertThat(updatedCustomer.getName()).isEqualTo(customerName);
+        assertThat(updatedCustomer.getUpdatedDate()).isAfterOrEqualTo(beforeUpdate);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testUpdateStaleVersion() {
+        Customer customer = customerRepository.findAll().get(0);
+        CustomerDTO customerDTO = CustomerDTO.builder().name("UPDATED").version(customer.getVersion()).build();
+
+        customerController.updateCustomerById(customer.getId(), customerDTO);
+
+        assertThat(customerRepository.findById(customer.getId()).orElseThrow().getVersion())
+                .isEqualTo(customer.getVersion() + 1);
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> customerController.patchCustomerById(customer.getId(), customerDTO));
+    }
+
+    @Test
+    void testPatchNotFound() {
+        assertThrows(NotFoundException.class, () -> customerController.patchCustomerById(UUID.randomUUID(),
+                CustomerDTO.builder().name("Unknown").build()));
     }
 
     @Rollback
@@ -100,28 +152,162 @@ class CustomerControllerIT {
     @Test
     void testListAllEmptyList() {
         customerRepository.deleteAll();
-        List<CustomerDTO> dtos = customerController.listCustomers();
-        assertThat(dtos.size()).isEqualTo(0);
+        Page<CustomerDTO> dtos = customerController.listCustomers(null, null);
+        assertThat(dtos.getContent().size()).isEqualTo(0);
     }
 
     @Test
     void testListAll() {
-        List<CustomerDTO> dtos = customerController.listCustomers();
-        assertThat(dtos.size()).isEqualTo(3);
+        Page<CustomerDTO> dtos = customerController.listCustomers(null, null);
+        assertThat(dtos.getContent().size()).isEqualTo(3);
+        assertThat(dtos.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void testListCustomersPaged() {
+        Page<CustomerDTO> firstPage = customerController.listCustomers(1, 2);
+        Page<CustomerDTO> secondPage = customerController.listCustomers(2, 2);
+
+        assertThat(firstPage.getContent()).hasSize(2);
+        assertThat(secondPage.getContent()).hasSize(1);
+        assertThat(firstPage.getTotalElements()).isEqualTo(3);
+        assertThat(firstPage.getContent().get(1).getName())
+                .isLessThanOrEqualTo(secondPage.getContent().get(0).getName());
+    }
+
+    @Test
+    void testListCustomersAfterWalksAllPages() {
+        List<CustomerDTO> walked = new ArrayList<>();
+        String after = "";
+        CursorPage<CustomerDTO> page;
+
+        do {
+            page = customerController.listCustomersAfter(after, 2);
+            walked.addAll(page.getContent());
+            after = page.getNext();
+        } while (page.isHasNext());
+
+        assertThat(walked).extracting(CustomerDTO::getId)
+                .containsExactlyElementsOf(customerController.listCustomers(1, 10).getContent().stream()
+                        .map(CustomerDTO::getId).toList());
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testListCustomersAfterWalksNullNames() {
+        Customer named = customerRepository.save(Customer.builder().name("null").build());
+        List<UUID> nameless = List.of(
+                customerRepository.save(Customer.builder().build()).getId(),
+                customerRepository.save(Customer.builder().build()).getId());
+        customerRepository.flush();
+
+        List<CustomerDTO> walked = new ArrayList<>();
+        String after = "";
+        CursorPage<CustomerDTO> page;
+
+        // one customer per page, so every one of them ends a page
+        do {
+            page = customerController.listCustomersAfter(after, 1);
+            walked.addAll(page.getContent());
+            after = page.getNext();
+        } while (page.isHasNext());
+
+        List<UUID> walkedIds = walked.stream().map(CustomerDTO::getId).toList();
+
+        // the nameless customers sort first, and the one named "null" is not mistaken for them
+        assertThat(walkedIds).hasSize((int) customerRepository.count()).doesNotHaveDuplicates().contains(named.getId());
+        assertThat(walkedIds.subList(0, 2)).containsExactlyInAnyOrderElementsOf(nameless);
+    }
+
+    @Test
+    void testListCustomersInvalidCursor() {
+        assertThrows(BadRequestException.class, () -> customerController.listCustomersAfter("not a cursor!", 2));
+    }
+
+    @Test
+    void testListCustomersAfterPageSizeZero() {
+        assertThrows(BadRequestException.class, () -> customerController.listCustomersAfter("", 0));
+    }
+
+    @Test
+    void testListCustomerOrdersPageSizeZero() {
+        Customer customer = customerRepository.findAll().get(0);
+
+        assertThrows(BadRequestException.class,
+                () -> customerController.listCustomerOrders(customer.getId(), null, 0));
+        assertThrows(BadRequestException.class,
+                () -> customerController.listCustomerOrders(customer.getId(), null, -1));
+    }
+
+    @Test
+    void testExportCustomers() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        customerController.exportCustomers().getBody().writeTo(outputStream);
+
+        List<String> lines = outputStream.toString(StandardCharsets.UTF_8).lines().toList();
+
+        assertThat(lines).hasSize((int) customerRepository.count());
+        assertThat(lines).allMatch(line -> line.startsWith("{\"id\":"));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testUpsertCustomers() {
+        List<Customer> existing = customerRepository.findAll();
+
+        CustomerDTO newCustomer = CustomerDTO.builder().name("New From CRM").build();
+        CustomerDTO update = customerMapper.customerToCustomerDTO(existing.get(0));
+        update.setName("Renamed In CRM");
+        CustomerDTO duplicate = customerMapper.customerToCustomerDTO(existing.get(0));
+        CustomerDTO stale = customerMapper.customerToCustomerDTO(existing.get(1));
+        stale.setVersion(stale.getVersion() + 1);
+        CustomerDTO unknown = CustomerDTO.builder().id(UUID.randomUUID()).name("Unknown").build();
+
+        List<BatchItemResult> results = customerController.upsertCustomers(
+                List.of(newCustomer, update, duplicate, stale, unknown));
+
+        assertThat(results).extracting(BatchItemResult::getStatus).containsExactly(BatchItemStatus.CREATED,
+                BatchItemStatus.UPDATED, BatchItemStatus.CONFLICT, BatchItemStatus.CONFLICT,
+                BatchItemStatus.NOT_FOUND);
+
+        assertThat(customerRepository.findById(results.get(0).getId()).orElseThrow().getName())
+                .isEqualTo("New From CRM");
+        assertThat(customerRepository.findById(update.getId()).orElseThrow().getName())
+                .isEqualTo("Renamed In CRM");
+        assertThat(results.get(1).getVersion()).isEqualTo(update.getVersion() + 1);
     }
 
     @Test
     void testGetByIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-            customerController.getCustomerById(UUID.randomUUID());
+            customerController.getCustomerById(UUID.randomUUID(), null);
         });
     }
 
     @Test
     void testGetById() {
         Customer customer = customerRepository.findAll().get(0);
-        CustomerDTO customerDTO = customerController.getCustomerById(customer.getId());
+        CustomerDTO customerDTO = customerController.getCustomerById(customer.getId(), null).getBody();
         assertThat(customerDTO).isNotNull();
     }
 
+    @Test
+    void testGetByIdNotModified() {
+        Customer customer = customerRepository.findAll().get(0);
+        ResponseEntity<CustomerDTO> first = customerController.getCustomerById(customer.getId(), null);
+        String etag = first.getHeaders().getETag();
+
+        assertThat(etag).isEqualTo("\"" + customer.getId() + "-" + customer.getVersion() + "\"");
+
+        ResponseEntity<CustomerDTO> second = customerController.getCustomerById(customer.getId(), etag);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(304));
+        assertThat(second.getBody()).isNull();
+
+        ResponseEntity<CustomerDTO> stale = customerController.getCustomerById(customer.getId(), "\"stale\"");
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(200));
+        assertThat(stale.getBody()).isNotNull();
+    }
+
 }
\ No newline at end of file
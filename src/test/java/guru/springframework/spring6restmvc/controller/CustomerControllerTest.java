@@ -2,7 +2,17 @@ package guru.springframework.spring6restmvc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6restmvc.config.SpringSecConfig;
+import guru.springframework.spring6restmvc.model.BatchItemResult;
+import guru.springframework.spring6restmvc.model.BatchItemStatus;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import guru.springframework.spring6restmvc.model.CursorPage;
 import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.model.RollupRebuildResult;
+import guru.springframework.spring6restmvc.services.BeerOrderService;
+import guru.springframework.spring6restmvc.services.CustomerBatchService;
+import guru.springframework.spring6restmvc.services.CustomerExportService;
+import guru.springframework.spring6restmvc.services.CustomerOrderRollupService;
 import guru.springframework.spring6restmvc.services.CustomerService;
 import guru.springframework.spring6restmvc.services.CustomerServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,7 +26,9 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,6 +36,7 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
@@ -43,6 +56,18 @@ class CustomerControllerTest {
     @MockitoBean
     CustomerService customerService;
 
+    @MockitoBean
+    CustomerExportService customerExportService;
+
+    @MockitoBean
+    CustomerBatchService customerBatchService;
+
+    @MockitoBean
+    BeerOrderService beerOrderService;
+
+    @MockitoBean
+    CustomerOrderRollupService customerOrderRollupService;
+
     CustomerServiceImpl customerServiceImpl;
 
     @BeforeEach
@@ -59,11 +84,13 @@ class CustomerControllerTest {
 
     @Test
     void testPatchCustomer() throws Exception {
-        CustomerDTO customer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO customer = customerServiceImpl.listCustomers(null, null).getContent().get(0);
 
         Map<String, Object> customerMap = new HashMap<>();
         customerMap.put("name", "New Name");
 
+        given(customerService.patchCustomerById(any(), any())).willReturn(true);
+
         mockMvc.perform(patch(CustomerController.CUSTOMER_PATH_ID, customer.getId())
                         .with(BeerControllerTest.jwtRequestPostProcessor)
                         .contentType(MediaType.APPLICATION_JSON)
@@ -79,7 +106,7 @@ class CustomerControllerTest {
 
     @Test
     void testDeleteCustomer() throws Exception {
-        CustomerDTO customer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO customer = customerServiceImpl.listCustomers(null, null).getContent().get(0);
 
         given(customerService.deleteCustomerById(any())).willReturn(true);
 
@@ -96,9 +123,9 @@ class CustomerControllerTest {
 
     @Test
     void testUpdateCustomer() throws Exception {
-        CustomerDTO customer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO customer = customerServiceImpl.listCustomers(null, null).getContent().get(0);
 
-        given(customerService.updateCustomerById(any(), any())).willReturn(Optional.of(CustomerDTO.builder().build()));
+        given(customerService.updateCustomerById(any(), any())).willReturn(true);
 
         mockMvc.perform(
                 put(CustomerController.CUSTOMER_PATH_ID, customer.getId())
@@ -115,12 +142,12 @@ class CustomerControllerTest {
 
     @Test
     void testCreateCustomer() throws Exception {
-        CustomerDTO customer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO customer = customerServiceImpl.listCustomers(null, null).getContent().get(0);
         customer.setId(null);
         customer.setVersion(null);
 
         given(customerService.saveNewCustomer(any(CustomerDTO.class)))
-                .willReturn(customerServiceImpl.listCustomers().get(1));
+                .willReturn(customerServiceImpl.listCustomers(null, null).getContent().get(1));
 
         mockMvc.perform(
                         post(CustomerController.CUSTOMER_PATH)
@@ -135,15 +162,52 @@ class CustomerControllerTest {
     @Test
     void listCustomers() throws Exception {
 
-        given(customerService.listCustomers()).willReturn(customerServiceImpl.listCustomers());
+        given(customerService.listCustomers(any(), any())).willReturn(customerServiceImpl.listCustomers(null, null));
 
         mockMvc.perform(get(CustomerController.CUSTOMER_PATH)
                         .with(BeerControllerTest.jwtRequestPostProcessor)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.length()", is(3)));
+                .andExpect(jsonPath("$.content.length()", is(3)));
+
+    }
+
+    @Test
+    void listCustomersAfter() throws Exception {
+        given(customerService.listCustomersAfter(any(), any()))
+                .willReturn(customerServiceImpl.listCustomersAfter("", 25));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH)
+                        .queryParam("after", "")
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(3)))
+                .andExpect(jsonPath("$.hasNext", is(false)));
+
+        verify(customerService).listCustomersAfter(any(), any());
+    }
+
+    @Test
+    void upsertCustomers() throws Exception {
+        List<CustomerDTO> customers = customerServiceImpl.listCustomers(null, null).getContent();
+
+        given(customerBatchService.upsertCustomers(any())).willReturn(List.of(
+                BatchItemResult.builder().index(0).status(BatchItemStatus.UPDATED).build(),
+                BatchItemResult.builder().index(1).status(BatchItemStatus.CONFLICT).build(),
+                BatchItemResult.builder().index(2).status(BatchItemStatus.NOT_FOUND).build()));
+
+        mockMvc.perform(put(CustomerController.CUSTOMER_BATCH_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(customers)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[1].status", is("CONFLICT")));
 
+        verify(customerBatchService).upsertCustomers(any());
     }
 
     @Test
@@ -158,7 +222,7 @@ class CustomerControllerTest {
     @Test
     void getCustomerById() throws Exception {
 
-        CustomerDTO customer = customerServiceImpl.listCustomers().get(0);
+        CustomerDTO customer = customerServiceImpl.listCustomers(null, null).getContent().get(0);
 
         given(customerService.getCustomerById(customer.getId())).willReturn(Optional.of(customer));
 
@@ -170,4 +234,94 @@ class CustomerControllerTest {
                 .andExpect(jsonPath("$.name", is(customer.getName())));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testListCustomerOrders() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        UUID orderId = UUID.randomUUID();
+
+        given(beerOrderService.listCustomerOrders(customerId, "token", 10))
+                .willReturn(Optional.of(CursorPage.<BeerOrderSummaryDTO>builder()
+                        .content(List.of(BeerOrderSummaryDTO.builder()
+                                .id(orderId)
+                                .lineCount(3L)
+                                .total(new BigDecimal("36.50"))
+                                .build()))
+                        .size(1)
+                        .hasNext(true)
+                        .next("next-token")
+                        .build()));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_ORDERS_PATH, customerId)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("after", "token")
+                        .queryParam("pageSize", "10")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id", is(orderId.toString())))
+                .andExpect(jsonPath("$.content[0].lineCount", is(3)))
+                .andExpect(jsonPath("$.content[0].total", is(36.5)))
+                .andExpect(jsonPath("$.next", is("next-token")));
+    }
+
+    @Test
+    void testListCustomerOrdersUnknownCustomer() throws Exception {
+        given(beerOrderService.listCustomerOrders(any(), any(), any())).willReturn(Optional.empty());
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_ORDERS_PATH, UUID.randomUUID())
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListCustomerOrdersInvalidCursor() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        given(beerOrderService.listCustomerOrders(eq(customerId), eq("bad"), any()))
+                .willThrow(new BadRequestException("Invalid cursor: bad"));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_ORDERS_PATH, customerId)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .queryParam("after", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetCustomerRollup() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        given(customerOrderRollupService.getRollup(customerId)).willReturn(Optional.of(CustomerOrderRollupDTO.builder()
+                .customerId(customerId)
+                .orderCount(4L)
+                .unitsBought(12L)
+                .spend(new BigDecimal("143.88"))
+                .build()));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_ROLLUP_PATH, customerId)
+                        .with(BeerControllerTest.jwtRequestPostProcessor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderCount", is(4)))
+                .andExpect(jsonPath("$.unitsBought", is(12)))
+                .andExpect(jsonPath("$.spend", is(143.88)));
+    }
+
+    @Test
+    void testGetCustomerRollupUnknownCustomer() throws Exception {
+        given(customerOrderRollupService.getRollup(any())).willReturn(Optional.empty());
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_ROLLUP_PATH, UUID.randomUUID())
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testRebuildCustomerRollups() throws Exception {
+        given(customerOrderRollupService.rebuild())
+                .willReturn(RollupRebuildResult.builder().customers(3).rollups(2).build());
+
+        mockMvc.perform(post(CustomerController.CUSTOMER_ROLLUP_REBUILD_PATH)
+                        .with(BeerControllerTest.jwtRequestPostProcessor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customers", is(3)))
+                .andExpect(jsonPath("$.rollups", is(2)));
+    }
+}
@@ -0,0 +1,54 @@
+package guru.springframework.spring6restmvc.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void testVersionAndVariant() {
+        UUID uuid = TimeOrderedUuidGenerator.next();
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void testTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = TimeOrderedUuidGenerator.next();
+
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+
+        // may run ahead by a few milliseconds after a counter overflow
+        assertThat(timestamp).isBetween(before, System.currentTimeMillis() + 100);
+    }
+
+    @Test
+    void testUniqueAndInBinaryOrder() {
+        List<UUID> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            uuids.add(TimeOrderedUuidGenerator.next());
+        }
+
+        assertThat(new HashSet<>(uuids)).hasSize(uuids.size());
+
+        // binary(16) columns compare the bytes unsigned
+        List<UUID> sorted = new ArrayList<>(uuids);
+        sorted.sort(Comparator.comparing(TimeOrderedUuidGeneratorTest::toBytes, Arrays::compareUnsigned));
+
+        assertThat(sorted).isEqualTo(uuids);
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -2,14 +2,20 @@ package guru.springframework.spring6restmvc.repositories;
 
 import guru.springframework.spring6restmvc.bootstrap.BootstrapData;
 import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerDTO;
 import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
 import guru.springframework.spring6restmvc.services.BeerCsvServiceImpl;
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -24,6 +30,9 @@ class BeerRepositoryTest {
     @Autowired
     BeerRepository beerRepository;
 
+    @Autowired
+    EntityManager entityManager;
+
     @Test
     void testGetBeerListByName() {
         Page<Beer> list = beerRepository.findAllByBeerNameIsLikeIgnoreCase("%IPA%", null); // % signs are wildcards
@@ -31,6 +40,34 @@ class BeerRepositoryTest {
         assertThat(list.getContent().size()).isEqualTo(336);
     }
 
+    @Test
+    void testGetBeerDtosByNameAfter() {
+        Slice<BeerDTO> first = beerRepository.findBeerDtosAfter("%IPA%", null, null, true, 100);
+        BeerDTO last = first.getContent().get(99);
+
+        Slice<BeerDTO> next = beerRepository.findBeerDtosAfter("%IPA%", null,
+                new KeysetCursor(last.getBeerName(), last.getId()), true, 1000);
+
+        assertThat(first.hasNext()).isTrue();
+        assertThat(next.hasNext()).isFalse();
+        assertThat(next.getContent().size()).isEqualTo(236);
+        assertThat(next.getContent().get(0).getBeerName()).isGreaterThanOrEqualTo(last.getBeerName());
+    }
+
+    @Test
+    void testGetBeerDtosWithoutInventory() {
+        Slice<BeerDTO> slice = beerRepository.findBeerDtos(null, BeerStyle.IPA, false,
+                PageRequest.of(0, 25, Sort.by(Sort.Order.asc("beerName"))));
+
+        assertThat(slice.getContent().size()).isEqualTo(25);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(slice.getContent()).allSatisfy(beer -> {
+            assertThat(beer.getBeerStyle()).isEqualTo(BeerStyle.IPA);
+            assertThat(beer.getQuantityOnHand()).isNull();
+            assertThat(beer.getPrice()).isNotNull();
+        });
+    }
+
     @Test
     void testSaveBeerNameTooLong() {
 
@@ -71,4 +108,22 @@ class BeerRepositoryTest {
         assertThat(savedBeer.getId()).isNotNull();
     }
 
+    @Test
+    void testUpdateBeerOnlyDetachesTheUpdatedBeer() {
+        List<Beer> beers = beerRepository.findAll(PageRequest.of(0, 2)).getContent();
+        Beer updated = beers.get(0);
+        Beer untouched = beers.get(1);
+
+        int rows = beerRepository.updateBeer(updated.getId(), updated.getVersion(),
+                BeerDTO.builder().beerName("Updated In Place").build(), true);
+
+        assertThat(rows).isEqualTo(1);
+        assertThat(entityManager.contains(updated)).isFalse();
+        assertThat(entityManager.contains(untouched)).isTrue();
+
+        Beer reloaded = beerRepository.findById(updated.getId()).orElseThrow();
+        assertThat(reloaded.getBeerName()).isEqualTo("Updated In Place");
+        assertThat(reloaded.getVersion()).isEqualTo(updated.getVersion() + 1);
+    }
+
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package guru.springframework.spring6restmvc.repositories;
 
 import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +25,17 @@ class CustomerRepositoryTest {
         );
 
         assertThat(customer.getId()).isNotNull();
+        assertThat(customer.getId().version()).isEqualTo(7);
+    }
+
+    @Test
+    void testIdsSortedByCreation() {
+        Customer first = customerRepository.saveAndFlush(Customer.builder().name("First").build());
+        Customer second = customerRepository.saveAndFlush(Customer.builder().name("First").build());
+
+        List<CustomerDTO> customers = customerRepository.findCustomerDtosAfter("First", first.getId(), Limit.of(10));
+
+        assertThat(customers).extracting(CustomerDTO::getId).containsExactly(second.getId());
     }
 
 }
\ No newline at end of file
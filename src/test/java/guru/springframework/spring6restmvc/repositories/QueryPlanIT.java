@@ -0,0 +1,451 @@
+package guru.springframework.spring6restmvc.repositories;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.CustomerDTO;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan regression suite - runs every SQL statement the repositories send for a hot access path through
+ * MySQL's EXPLAIN, and fails when one of them falls back to a full table scan (type ALL) or a filesort.
+ * <p>
+ * The statements are captured at the JDBC level (SQL plus the exact bound parameters), so the plan checked is the
+ * plan of the query Hibernate really generates, including the count queries of Page results.
+ * <p>
+ * Substring searches on the beer name ({@code upper(beer_name) like '%...%'}) still reach the database for terms the
+ * in-memory beer name index can't answer. No B-tree range can serve them, but they mustn't read the table either:
+ * with a style they are a range of the (beer_style, beer_name, id) index, without one a walk of the (beer_name, id)
+ * index in page order, stopped once the page is full - the count a walk of the smaller index alone.
+ */
+@Testcontainers
+@SpringBootTest
+@ActiveProfiles("localmysql")
+public class QueryPlanIT {
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerOrderRepository beerOrderRepository;
+
+    @Autowired
+    BeerOrderLineRepository beerOrderLineRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    Beer testBeer;
+
+    @BeforeEach
+    void setUp() {
+        // fresh statistics, otherwise the optimizer may still think the freshly seeded tables are empty
+        jdbcTemplate.execute("analyze table beer, customer, beer_order, beer_order_line");
+
+        testBeer = beerRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        StatementRecorder.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        StatementRecorder.stop();
+    }
+
+    @Test
+    void testBeerById() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findById(testBeer.getId()));
+    }
+
+    @Test
+    void testBeersByStylePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findAllByBeerStyle(BeerStyle.IPA,
+                PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeersByStyleCount() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.countByBeerStyle(BeerStyle.IPA));
+    }
+
+    @Test
+    void testBeersByNamePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findAllByBeerNameIsLikeIgnoreCase("%IPA%",
+                PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeersByNameCount() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.countByBeerNameIsLikeIgnoreCase("%IPA%"));
+    }
+
+    @Test
+    void testBeersByNameAndStylePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findAllByBeerNameIsLikeIgnoreCaseAndBeerStyle("%IPA%",
+                BeerStyle.IPA, PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeersByNameAndStyleCount() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.countByBeerNameIsLikeIgnoreCaseAndBeerStyle("%IPA%",
+                BeerStyle.IPA));
+    }
+
+    @Test
+    void testBeerDtosByStylePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtos(null, BeerStyle.IPA, false,
+                PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeerDtosByNamePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtos("%IPA%", null, false,
+                PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeerDtosByNameAndStylePage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtos("%IPA%", BeerStyle.IPA, false,
+                PageRequest.of(3, 25, Sort.by(Sort.Order.asc("beerName")))));
+    }
+
+    @Test
+    void testBeerDtosByNameAfter() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtosAfter("%IPA%", null,
+                new KeysetCursor(testBeer.getBeerName(), testBeer.getId()), true, 25));
+    }
+
+    @Test
+    void testBeerDtosFirstKeysetPage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtosAfter(null, null, null, true, 25));
+    }
+
+    @Test
+    void testBeerDtosAfter() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtosAfter(null, null,
+                new KeysetCursor(testBeer.getBeerName(), testBeer.getId()), true, 25));
+    }
+
+    @Test
+    void testBeerDtosByStyleAfter() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtosAfter(null, BeerStyle.IPA,
+                new KeysetCursor(testBeer.getBeerName(), testBeer.getId()), true, 25));
+    }
+
+    @Test
+    void testBeerDtosByIds() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtosByIds(List.of(testBeer.getId()), false));
+    }
+
+    @Test
+    void testBeerDtoById() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findBeerDtoById(testBeer.getId()));
+    }
+
+    @Test
+    void testBeerVersionById() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findVersionById(testBeer.getId()));
+    }
+
+    @Test
+    void testCustomerVersionById() throws Exception {
+        assertNoFullScanOrFilesort(() -> customerRepository.findVersionById(UUID.randomUUID()));
+    }
+
+    @Test
+    void testBeerDtoExportStream() throws Exception {
+        // the stream has to be consumed inside a transaction
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BeerDTO> beers = beerRepository.streamAllBeerDtos()) {
+                beers.limit(10).forEach(beer -> {
+                });
+            }
+        }));
+    }
+
+    @Test
+    void testCustomerDtosFirstKeysetPage() throws Exception {
+        assertNoFullScanOrFilesort(() -> customerRepository.findFirstCustomerDtos(Limit.of(26)));
+    }
+
+    @Test
+    void testCustomerDtosAfter() throws Exception {
+        assertNoFullScanOrFilesort(() -> customerRepository.findCustomerDtosAfter("Customer 1", UUID.randomUUID(),
+                Limit.of(26)));
+    }
+
+    @Test
+    void testCustomerDtosAfterNullName() throws Exception {
+        assertNoFullScanOrFilesort(() -> customerRepository.findCustomerDtosAfterNullName(UUID.randomUUID(),
+                Limit.of(26)));
+    }
+
+    @Test
+    void testCustomerDtoExportStream() throws Exception {
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<CustomerDTO> customers = customerRepository.streamAllCustomerDtos()) {
+                customers.limit(10).forEach(customer -> {
+                });
+            }
+        }));
+    }
+
+    @Test
+    void testBeerUpdateById() throws Exception {
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            beerRepository.updateBeer(testBeer.getId(), testBeer.getVersion(),
+                    BeerDTO.builder().quantityOnHand(1).build(), true);
+            status.setRollbackOnly();
+        }));
+    }
+
+    @Test
+    void testCustomerUpdateName() throws Exception {
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            customerRepository.updateName(UUID.randomUUID(), 0, "Renamed");
+            status.setRollbackOnly();
+        }));
+    }
+
+    @Test
+    void testBeerDeleteById() throws Exception {
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            beerRepository.deleteBeerById(UUID.randomUUID());
+            status.setRollbackOnly();
+        }));
+    }
+
+    @Test
+    void testBeerPurgeableIds() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerRepository.findPurgeableIds(BeerStyle.IPA, 0, Limit.of(500)));
+    }
+
+    @Test
+    void testCustomerDeleteById() throws Exception {
+        assertNoFullScanOrFilesort(() -> transactionTemplate.executeWithoutResult(status -> {
+            customerRepository.deleteCustomerById(UUID.randomUUID());
+            status.setRollbackOnly();
+        }));
+    }
+
+    @Test
+    void testCustomerById() throws Exception {
+        assertNoFullScanOrFilesort(() -> customerRepository.findById(UUID.randomUUID()));
+    }
+
+    @Test
+    void testBeerOrderById() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerOrderRepository.findById(UUID.randomUUID()));
+    }
+
+    @Test
+    void testCustomerOrderSummariesFirstPage() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerOrderRepository.findFirstOrderSummaries(UUID.randomUUID(), Limit.of(26)));
+    }
+
+    @Test
+    void testCustomerOrderSummariesAfter() throws Exception {
+        assertNoFullScanOrFilesort(() -> beerOrderRepository.findOrderSummariesAfter(UUID.randomUUID(),
+                new Timestamp(System.currentTimeMillis()), UUID.randomUUID(), Limit.of(26)));
+    }
+
+    @Test
+    void testSalesFirstChunk() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        assertNoFullScanOrFilesort(() -> beerOrderLineRepository.findFirstSales(
+                new Timestamp(now.getTime() - 86_400_000L), now, Limit.of(10000)));
+    }
+
+    @Test
+    void testSalesLastLine() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        assertNoFullScanOrFilesort(() -> beerOrderLineRepository.findLastSales(
+                new Timestamp(now.getTime() - 86_400_000L), now, Limit.of(1)));
+    }
+
+    @Test
+    void testSalesChunkAfter() throws Exception {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        assertNoFullScanOrFilesort(() -> beerOrderLineRepository.findSalesAfter(now,
+                new Timestamp(now.getTime() - 86_400_000L), UUID.randomUUID(), Limit.of(10000)));
+    }
+
+    private void assertNoFullScanOrFilesort(Runnable repositoryCall) throws Exception {
+        StatementRecorder.start();
+        repositoryCall.run();
+        List<RecordedStatement> statements = StatementRecorder.stop();
+
+        assertThat(statements).as("captured statements").isNotEmpty();
+
+        List<String> problems = new ArrayList<>();
+
+        for (RecordedStatement statement : statements) {
+            problems.addAll(explain(statement));
+        }
+
+        assertThat(problems).as("query plan problems").isEmpty();
+    }
+
+    private List<String> explain(RecordedStatement statement) throws Exception {
+        List<String> problems = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("explain " + statement.sql())) {
+
+            statement.bind(explain);
+
+            try (ResultSet plan = explain.executeQuery()) {
+                while (plan.next()) {
+                    String table = plan.getString("table");
+                    String type = plan.getString("type");
+                    String extra = plan.getString("Extra");
+
+                    if ("ALL".equals(type))
+                        problems.add("full scan of " + table + " in: " + statement.sql());
+
+                    if (extra != null && extra.contains("Using filesort"))
+                        problems.add("filesort on " + table + " in: " + statement.sql());
+                }
+            }
+        }
+
+        return problems;
+    }
+
+    record ParameterCall(Method setter, Object[] args) {
+    }
+
+    record RecordedStatement(String sql, List<ParameterCall> parameters) {
+
+        // replays the exact setXxx(...) calls Hibernate made, on the EXPLAIN statement
+        void bind(PreparedStatement explain) throws Exception {
+            for (ParameterCall call : parameters) {
+                call.setter().invoke(explain, call.args());
+            }
+        }
+    }
+
+    static class StatementRecorder {
+
+        private static final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+        private static volatile boolean recording = false;
+
+        static void start() {
+            statements.clear();
+            recording = true;
+        }
+
+        static List<RecordedStatement> stop() {
+            recording = false;
+            return new ArrayList<>(statements);
+        }
+
+        static void clear() {
+            statements.clear();
+        }
+
+        static DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (method, args, result) ->
+                    "getConnection".equals(method.getName()) ? wrap((Connection) result) : result);
+        }
+
+        private static Connection wrap(Connection connection) {
+            return proxy(Connection.class, connection, (method, args, result) -> {
+                if ("prepareStatement".equals(method.getName()) && args[0] instanceof String sql
+                        && sql.trim().toLowerCase().startsWith("select")) {
+                    return wrap((PreparedStatement) result, sql);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement wrap(PreparedStatement preparedStatement, String sql) {
+            List<ParameterCall> parameters = new ArrayList<>();
+
+            return proxy(PreparedStatement.class, preparedStatement, (method, args, result) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2
+                        && args[0] instanceof Integer) {
+                    parameters.add(new ParameterCall(method, args));
+                } else if ("executeQuery".equals(method.getName()) && recording) {
+                    statements.add(new RecordedStatement(sql, List.copyOf(parameters)));
+                }
+                return result;
+            });
+        }
+
+        private interface AfterCall {
+            Object apply(Method method, Object[] args, Object result) throws Exception;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, AfterCall afterCall) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return afterCall.apply(method, args, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+
+    @TestConfiguration
+    static class StatementRecorderConfig {
+
+        @Bean
+        static BeanPostProcessor statementRecordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? StatementRecorder.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerCacheTest {
+
+    BeerCache beerCache = new BeerCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+
+    UUID beerId = UUID.randomUUID();
+
+    @Test
+    void testReadThroughCountsHitsAndMisses() {
+        beerCache.get(beerId, id -> Optional.of(beer(1, "Galaxy Cat")));
+        Optional<BeerDTO> cached = beerCache.get(beerId, id -> Optional.of(beer(1, "Loaded Again")));
+
+        assertThat(cached.get().getBeerName()).isEqualTo("Galaxy Cat");
+        assertThat(beerCache.stats().missCount()).isEqualTo(1);
+        assertThat(beerCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testMissingBeerIsNotCached() {
+        assertThat(beerCache.get(beerId, id -> Optional.empty())).isEmpty();
+        assertThat(beerCache.get(beerId, id -> Optional.of(beer(1, "Galaxy Cat")))).isPresent();
+    }
+
+    @Test
+    void testOlderVersionNeverReplacesNewer() {
+        beerCache.refresh(beer(3, "Version 3"));
+        beerCache.refresh(beer(2, "Version 2"));
+
+        assertThat(beerCache.get(beerId, id -> Optional.empty()).get().getBeerName()).isEqualTo("Version 3");
+
+        beerCache.refresh(beer(4, "Version 4"));
+
+        assertThat(beerCache.get(beerId, id -> Optional.empty()).get().getBeerName()).isEqualTo("Version 4");
+    }
+
+    @Test
+    void testEvict() {
+        beerCache.get(beerId, id -> Optional.of(beer(1, "Galaxy Cat")));
+        beerCache.evict(beerId);
+
+        assertThat(beerCache.get(beerId, id -> Optional.empty())).isEmpty();
+    }
+
+    @Test
+    void testCallersGetCopies() {
+        beerCache.get(beerId, id -> Optional.of(beer(1, "Galaxy Cat"))).get().setBeerName("Changed");
+
+        assertThat(beerCache.get(beerId, id -> Optional.empty()).get().getBeerName()).isEqualTo("Galaxy Cat");
+    }
+
+    private BeerDTO beer(int version, String beerName) {
+        return BeerDTO.builder()
+                .id(beerId)
+                .version(version)
+                .beerName(beerName)
+                .beerStyle(BeerStyle.PALE_ALE)
+                .build();
+    }
+}
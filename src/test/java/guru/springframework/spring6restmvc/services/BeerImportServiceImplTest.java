@@ -0,0 +1,48 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.ServiceUnavailableException;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class BeerImportServiceImplTest {
+
+    @Test
+    void testRejectedImportLeavesNothingBehind() throws IOException {
+        TaskExecutor fullExecutor = task -> {
+            throw new TaskRejectedException("queue full");
+        };
+
+        BeerImportService beerImportService = new BeerImportServiceImpl(mock(BeerRepository.class),
+                new BeerCsvServiceImpl(), mock(BeerNameIndex.class), mock(TransactionTemplate.class), fullExecutor,
+                1000);
+
+        List<Path> tempFilesBefore = importTempFiles();
+
+        // the upload's copy is deleted again, as no job will
+        assertThrows(ServiceUnavailableException.class, () -> beerImportService.startImport(
+                new ByteArrayInputStream("header\n".getBytes(StandardCharsets.UTF_8)), "beers.csv"));
+
+        assertThat(importTempFiles()).isEqualTo(tempFilesBefore);
+    }
+
+    private static List<Path> importTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("beer-import-")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.controller.InsufficientStockException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.entities.BeerStockStripe;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.BeerStockStripeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class BeerInventoryServiceImplTest {
+
+    @Autowired
+    BeerInventoryService beerInventoryService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockStripeRepository beerStockStripeRepository;
+
+    @Autowired
+    BeerService beerService;
+
+    Beer testBeer;
+
+    @BeforeEach
+    void setUp() {
+        // committed, so every thread sees it
+        testBeer = beerRepository.save(Beer.builder().beerName("Inventory Test").beerStyle(BeerStyle.LAGER)
+                .upc("inventory").price(BigDecimal.TEN).quantityOnHand(100).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteBeerById(testBeer.getId());
+    }
+
+    @Test
+    void testAdjustQuantityOnHand() {
+        BeerDTO beer = beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -30).orElseThrow();
+
+        assertThat(beer.getQuantityOnHand()).isEqualTo(70);
+        assertThat(beer.getVersion()).isEqualTo(testBeer.getVersion() + 1);
+
+        assertThat(beerInventoryService.adjustQuantityOnHand(testBeer.getId(), 5).orElseThrow().getQuantityOnHand())
+                .isEqualTo(75);
+    }
+
+    @Test
+    void testAdjustQuantityOnHandNeverNegative() {
+        assertThrows(InsufficientStockException.class,
+                () -> beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -101));
+
+        assertThat(beerRepository.findById(testBeer.getId()).orElseThrow().getQuantityOnHand()).isEqualTo(100);
+    }
+
+    @Test
+    void testAdjustQuantityOnHandNotFound() {
+        assertThat(beerInventoryService.adjustQuantityOnHand(UUID.randomUUID(), 1)).isEmpty();
+    }
+
+    @Test
+    void testConcurrentDecrementsAddUp() throws Exception {
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        // 160 scanners taking out one each, only 100 in stock
+        hammer(16, 10, () -> {
+            try {
+                beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -1);
+                taken.incrementAndGet();
+            } catch (InsufficientStockException e) {
+                refused.incrementAndGet();
+            }
+        });
+
+        assertThat(taken.get()).isEqualTo(100);
+        assertThat(refused.get()).isEqualTo(60);
+        assertThat(beerRepository.findById(testBeer.getId()).orElseThrow().getQuantityOnHand()).isZero();
+    }
+
+    @Test
+    void testStripedAdjustments() {
+        assertThat(beerInventoryService.stripeQuantityOnHand(testBeer.getId(), 4)).isTrue();
+
+        assertThat(beerStockStripeRepository.findAll()).filteredOn(stripe -> stripe.getBeerId().equals(testBeer.getId()))
+                .extracting(BeerStockStripe::getQuantityOnHand).containsExactlyInAnyOrder(25, 25, 25, 25);
+        BeerDTO striped = beerService.getBeerById(testBeer.getId()).orElseThrow();
+        assertThat(striped.getQuantityOnHand()).isEqualTo(100);
+
+        // a single stripe, the beer row stays as it is
+        BeerDTO beer = beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -5).orElseThrow();
+        assertThat(beer.getQuantityOnHand()).isEqualTo(95);
+        assertThat(beer.getVersion()).isEqualTo(striped.getVersion());
+        // the same version, so a conditional GET tells the stock change apart by the stock
+        assertThat(beerService.getBeerById(testBeer.getId())).hasValueSatisfying(current -> {
+            assertThat(current.getVersion()).isEqualTo(striped.getVersion());
+            assertThat(current.getQuantityOnHand()).isEqualTo(95);
+        });
+
+        // more than any single stripe holds - spread again
+        assertThat(beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -60).orElseThrow().getQuantityOnHand())
+                .isEqualTo(35);
+        assertThrows(InsufficientStockException.class,
+                () -> beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -36));
+
+        // an absolute write is the whole stock again
+        beerService.patchBeerById(testBeer.getId(), BeerDTO.builder().quantityOnHand(10).build());
+        assertThat(beerService.getBeerById(testBeer.getId()).orElseThrow().getQuantityOnHand()).isEqualTo(10);
+        assertThat(beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -10).orElseThrow().getQuantityOnHand())
+                .isZero();
+
+        assertThat(beerInventoryService.adjustQuantityOnHand(testBeer.getId(), 7).orElseThrow().getQuantityOnHand())
+                .isEqualTo(7);
+        assertThat(beerInventoryService.stripeQuantityOnHand(testBeer.getId(), 0)).isTrue();
+
+        assertThat(beerRepository.findById(testBeer.getId()).orElseThrow().getQuantityOnHand()).isEqualTo(7);
+        assertThat(beerStockStripeRepository.findAll())
+                .noneMatch(stripe -> stripe.getBeerId().equals(testBeer.getId()));
+    }
+
+    @Test
+    void testStripedConcurrentDecrementsAddUp() throws Exception {
+        beerInventoryService.stripeQuantityOnHand(testBeer.getId(), 4);
+        AtomicInteger taken = new AtomicInteger();
+
+        hammer(16, 10, () -> {
+            try {
+                beerInventoryService.adjustQuantityOnHand(testBeer.getId(), -1);
+                taken.incrementAndGet();
+            } catch (InsufficientStockException e) {
+                // sold out
+            }
+        });
+
+        assertThat(taken.get()).isEqualTo(100);
+        assertThat(beerService.getBeerById(testBeer.getId()).orElseThrow().getQuantityOnHand()).isZero();
+    }
+
+    @Test
+    void testStripeCountBounds() {
+        assertThrows(BadRequestException.class, () -> beerInventoryService.stripeQuantityOnHand(testBeer.getId(), 65));
+        assertThrows(BadRequestException.class, () -> beerInventoryService.stripeQuantityOnHand(testBeer.getId(), -1));
+        assertThat(beerInventoryService.stripeQuantityOnHand(UUID.randomUUID(), 4)).isFalse();
+    }
+
+    @Test
+    void testRetriesLockConflicts() {
+        BeerRepository repository = mock(BeerRepository.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BeerInventoryServiceImpl service = new BeerInventoryServiceImpl(repository,
+                mock(BeerStockStripeRepository.class), mock(BeerCache.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry, 3, Duration.ofMillis(1),
+                64);
+
+        UUID beerId = UUID.randomUUID();
+        given(repository.findStockStripesById(beerId)).willReturn(Optional.of(0));
+        given(repository.adjustQuantityOnHand(beerId, -1))
+                .willThrow(new CannotAcquireLockException("lock wait timeout"))
+                .willThrow(new CannotAcquireLockException("lock wait timeout"))
+                .willReturn(1);
+        given(repository.findBeerDtoById(beerId))
+                .willReturn(Optional.of(BeerDTO.builder().id(beerId).version(1).quantityOnHand(9).build()));
+
+        assertThat(service.adjustQuantityOnHand(beerId, -1)).isPresent();
+        assertThat(meterRegistry.get("beer.inventory.conflicts").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("beer.inventory.adjustments").tag("outcome", "applied").counter().count())
+                .isEqualTo(1);
+
+        // gives up after max-attempts
+        given(repository.adjustQuantityOnHand(any(), anyInt()))
+                .willThrow(new CannotAcquireLockException("lock wait timeout"));
+
+        assertThrows(CannotAcquireLockException.class, () -> service.adjustQuantityOnHand(beerId, -1));
+        verify(repository, times(6)).adjustQuantityOnHand(any(), anyInt());
+        assertThat(meterRegistry.get("beer.inventory.adjustments").tag("outcome", "exhausted").counter().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * Opt-in contention benchmark - many threads adjusting the stock of a single beer, unstriped and striped,
+     * run with {@code mvn test -Dtest=BeerInventoryServiceImplTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkSingleBeerContention() throws Exception {
+        int perThread = 500;
+
+        for (int stripes : new int[]{0, 4, 16}) {
+            beerInventoryService.stripeQuantityOnHand(testBeer.getId(), stripes);
+
+            for (int threads : new int[]{1, 4, 16, 64}) {
+                long start = System.nanoTime();
+
+                // half the threads add stock and half take it out, so it never runs dry
+                AtomicInteger next = new AtomicInteger();
+                hammer(threads, perThread, () -> beerInventoryService.adjustQuantityOnHand(testBeer.getId(),
+                        next.getAndIncrement() % 2 == 0 ? 1 : -1));
+
+                long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+                System.out.printf("%d stripes, %d threads - %d adjustments in %d ms, %.0f per second%n",
+                        stripes, threads, threads * perThread, millis, threads * perThread * 1000d / millis);
+            }
+        }
+    }
+
+    private static void hammer(int threads, int perThread, Runnable adjustment) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < perThread; j++) {
+                        adjustment.run();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class BeerNameIndexTest {
+
+    BeerRepository beerRepository = mock(BeerRepository.class);
+
+    BeerNameIndex beerNameIndex = new BeerNameIndex(beerRepository);
+
+    Beer galaxyCat = beer("Galaxy Cat", BeerStyle.PALE_ALE);
+    Beer sunshineIpa = beer("Sunshine City IPA", BeerStyle.IPA);
+    Beer hazyIpa = beer("Hazy IPA", BeerStyle.IPA);
+    Beer ipaStout = beer("Not an IPA", BeerStyle.STOUT);
+
+    @BeforeEach
+    void setUp() {
+        given(beerRepository.findAllNamesBy()).willReturn(Collections.emptyList());
+        beerNameIndex.rebuild();
+
+        beerNameIndex.put(galaxyCat);
+        beerNameIndex.put(sunshineIpa);
+        beerNameIndex.put(hazyIpa);
+        beerNameIndex.put(ipaStout);
+    }
+
+    @Test
+    void testSearchIgnoresCaseAndSortsByName() {
+        assertThat(beerNameIndex.search("ipa", null))
+                .containsExactly(hazyIpa.getId(), ipaStout.getId(), sunshineIpa.getId());
+    }
+
+    @Test
+    void testSearchIgnoresAccents() {
+        Beer cafe = beer("Café Porter", BeerStyle.PORTER);
+        Beer cafeDecomposed = beer("Cafe\u0301 Noir", BeerStyle.STOUT);
+        beerNameIndex.put(cafe);
+        beerNameIndex.put(cafeDecomposed);
+
+        // like the LIKE under utf8mb4_0900_ai_ci, both ways round
+        assertThat(beerNameIndex.search("cafe", null)).containsExactly(cafeDecomposed.getId(), cafe.getId());
+        assertThat(beerNameIndex.search("CAFÉ", null)).containsExactly(cafeDecomposed.getId(), cafe.getId());
+        assertThat(beerNameIndex.canSearch("éé")).isFalse();
+    }
+
+    @Test
+    void testSearchWithStyle() {
+        assertThat(beerNameIndex.search("IPA", BeerStyle.IPA)).containsExactly(hazyIpa.getId(), sunshineIpa.getId());
+    }
+
+    @Test
+    void testSearchAfterCursor() {
+        KeysetCursor after = new KeysetCursor(hazyIpa.getBeerName(), hazyIpa.getId());
+
+        assertThat(beerNameIndex.search("IPA", null, after)).containsExactly(ipaStout.getId(), sunshineIpa.getId());
+    }
+
+    @Test
+    void testRenameAndRemove() {
+        galaxyCat.setBeerName("Galaxy IPA");
+        beerNameIndex.put(galaxyCat);
+        beerNameIndex.remove(hazyIpa.getId());
+
+        assertThat(beerNameIndex.search("ipa", null))
+                .containsExactly(galaxyCat.getId(), ipaStout.getId(), sunshineIpa.getId());
+        assertThat(beerNameIndex.search("cat", null)).isEmpty();
+    }
+
+    @Test
+    void testSortsLikeTheDatabaseIndex() {
+        // case-insensitive names, like MySQL's default collation - "Beta" would sort first by String.compareTo
+        Beer alpha = beer("alpha Lager", BeerStyle.LAGER);
+        Beer beta = beer("Beta Lager", BeerStyle.LAGER);
+        // same name - ids in unsigned byte order, like binary(16), where UUID.compareTo puts the 0x8... one first
+        Beer low = Beer.builder().id(new UUID(0x1000000000000000L, 1)).beerName("Gamma Lager")
+                .beerStyle(BeerStyle.LAGER).build();
+        Beer high = Beer.builder().id(new UUID(0x8000000000000000L, 1)).beerName("Gamma Lager")
+                .beerStyle(BeerStyle.LAGER).build();
+
+        beerNameIndex.put(high);
+        beerNameIndex.put(beta);
+        beerNameIndex.put(low);
+        beerNameIndex.put(alpha);
+
+        assertThat(beerNameIndex.search("lager", null))
+                .containsExactly(alpha.getId(), beta.getId(), low.getId(), high.getId());
+        assertThat(beerNameIndex.search("lager", null, new KeysetCursor("ALPHA LAGER", alpha.getId())))
+                .containsExactly(beta.getId(), low.getId(), high.getId());
+    }
+
+    @Test
+    void testRebuildKeepsChangesCommittedWhileReading() throws Exception {
+        Beer added = beer("Midnight IPA", BeerStyle.IPA);
+        Thread committer = new Thread(() -> beerNameIndex.put(added));
+
+        // the beer is committed while the names are read, so it's missing from what the read returns
+        given(beerRepository.findAllNamesBy()).willAnswer(invocation -> {
+            committer.start();
+            committer.join(200);
+            return Collections.emptyList();
+        });
+
+        beerNameIndex.rebuild();
+        committer.join();
+
+        assertThat(beerNameIndex.search("midnight", null)).containsExactly(added.getId());
+    }
+
+    @Test
+    void testCanSearch() {
+        assertThat(beerNameIndex.canSearch("IPA")).isTrue();
+        assertThat(beerNameIndex.canSearch("IP")).isFalse();
+        assertThat(beerNameIndex.canSearch("I%A")).isFalse();
+    }
+
+    private static Beer beer(String beerName, BeerStyle beerStyle) {
+        return Beer.builder()
+                .id(UUID.randomUUID())
+                .beerName(beerName)
+                .beerStyle(beerStyle)
+                .build();
+    }
+}
@@ -0,0 +1,269 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.StatementCounter;
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderShipment;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderSummaryDTO;
+import guru.springframework.spring6restmvc.model.CursorPage;
+import guru.springframework.spring6restmvc.model.KeysetCursor;
+import guru.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class BeerOrderServiceJPATest {
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerOrderRepository beerOrderRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    Customer customer;
+    List<Beer> beers;
+
+    @BeforeEach
+    void setUp() {
+        customer = customerRepository.findAll().get(0);
+        beers = beerRepository.findAll(PageRequest.of(0, 50)).getContent();
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrder() {
+        BeerOrderDTO beerOrder = beerOrderService.placeOrder(order(3, "Test order"));
+
+        assertThat(beerOrder.getId()).isNotNull();
+        assertThat(beerOrder.getCustomerId()).isEqualTo(customer.getId());
+        assertThat(beerOrder.getCustomerRef()).isEqualTo("Test order");
+        assertThat(beerOrder.getCreatedDate()).isNotNull();
+        assertThat(beerOrder.getBeerOrderLines()).hasSize(3)
+                .extracting(BeerOrderLineDTO::getBeerId)
+                .containsExactlyInAnyOrder(beers.get(0).getId(), beers.get(1).getId(), beers.get(2).getId());
+
+        BeerOrder saved = beerOrderRepository.findById(beerOrder.getId()).orElseThrow();
+        assertThat(saved.getBeerOrderShipment()).isNotNull();
+        assertThat(saved.getBeerOrderLines()).hasSize(3);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrderStatementsDontGrow() {
+        // a customer with a history, which placing an order must not load
+        for (int i = 0; i < 200; i++) {
+            beerOrderRepository.save(BeerOrder.builder()
+                    .customer(customerRepository.getReferenceById(customer.getId()))
+                    .beerOrderShipment(BeerOrderShipment.builder().build())
+                    .build());
+        }
+        beerOrderRepository.flush();
+
+        // the first order computes the customer's rollup from its orders, the next ones only add to it
+        beerOrderService.placeOrder(order(1, null));
+
+        StatementCounter.start();
+        beerOrderService.placeOrder(order(1, null));
+        List<String> oneLine = StatementCounter.stop();
+
+        StatementCounter.start();
+        beerOrderService.placeOrder(order(50, null));
+        List<String> fiftyLines = StatementCounter.stop();
+
+        assertThat(fiftyLines).hasSameSizeAs(oneLine);
+        // only the customer's row lock and the beer prices are read - neither the customer nor its orders are loaded
+        assertThat(fiftyLines).filteredOn(sql -> sql.startsWith("select"))
+                .satisfiesExactly(
+                        sql -> assertThat(sql).startsWith("select c1_0.id from customer ").contains("for update"),
+                        sql -> assertThat(sql).startsWith("select b1_0.id,b1_0.price from beer "));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testGetOrderStatementsDontGrow() {
+        BeerOrderDTO small = beerOrderService.placeOrder(order(1, "small"));
+        BeerOrderDTO large = beerOrderService.placeOrder(order(50, "large"));
+        entityManager.clear();
+
+        StatementCounter.start();
+        BeerOrderDTO smallOrder = beerOrderService.getOrderById(small.getId()).orElseThrow();
+        List<String> oneLine = StatementCounter.stop();
+
+        StatementCounter.start();
+        BeerOrderDTO largeOrder = beerOrderService.getOrderById(large.getId()).orElseThrow();
+        List<String> fiftyLines = StatementCounter.stop();
+
+        assertThat(smallOrder.getBeerOrderLines()).hasSize(1);
+        assertThat(largeOrder.getBeerOrderLines()).hasSize(50);
+        assertThat(largeOrder.getCustomerId()).isEqualTo(customer.getId());
+        assertThat(largeOrder.getBeerOrderLines()).extracting(BeerOrderLineDTO::getBeerId).doesNotContainNull();
+
+        assertThat(oneLine).hasSize(1);
+        assertThat(fiftyLines).hasSize(1);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testListOrdersStatementsDontGrow() {
+        Customer otherCustomer = customerRepository.findAll().get(1);
+
+        beerOrderService.placeOrder(order(2, null));
+
+        for (int i = 0; i < 40; i++) {
+            BeerOrderCreateDTO order = order(1 + i % 10, "order " + i);
+            order.setCustomerId(otherCustomer.getId());
+            beerOrderService.placeOrder(order);
+        }
+        entityManager.clear();
+
+        StatementCounter.start();
+        Page<BeerOrderDTO> fewOrders = beerOrderService.listOrders(customer.getId(), 1, 50);
+        List<String> fewStatements = StatementCounter.stop();
+        entityManager.clear();
+
+        StatementCounter.start();
+        Page<BeerOrderDTO> manyOrders = beerOrderService.listOrders(otherCustomer.getId(), 1, 50);
+        List<String> manyStatements = StatementCounter.stop();
+
+        assertThat(fewOrders.getContent()).hasSize(1);
+        assertThat(manyOrders.getContent()).hasSize(40);
+        assertThat(manyOrders.getContent().get(0).getCustomerRef()).isEqualTo("order 39");
+        assertThat(manyOrders.getContent()).allSatisfy(beerOrder ->
+                assertThat(beerOrder.getBeerOrderLines()).isNotEmpty());
+
+        // the orders with their shipments, then the lines of all of them
+        assertThat(fewStatements).hasSize(2);
+        assertThat(manyStatements).hasSize(2);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testListCustomerOrders() {
+        Customer otherCustomer = customerRepository.findAll().get(1);
+        List<UUID> placed = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            BeerOrderCreateDTO order = order(i + 1, "order " + i);
+            order.setCustomerId(otherCustomer.getId());
+            placed.add(0, beerOrderService.placeOrder(order).getId()); // newest first
+        }
+        beerOrderService.placeOrder(order(2, "someone else's"));
+
+        // the totals are what the orders cost when they were placed - beers keeps the old prices
+        entityManager.createQuery("update Beer b set b.price = b.price + 10 where b.id = :id")
+                .setParameter("id", beers.get(0).getId())
+                .executeUpdate();
+        entityManager.clear();
+
+        List<BeerOrderSummaryDTO> walked = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+
+        do {
+            StatementCounter.start();
+            CursorPage<BeerOrderSummaryDTO> page = beerOrderService.listCustomerOrders(otherCustomer.getId(), after, 2)
+                    .orElseThrow();
+            assertThat(StatementCounter.stop()).hasSize(1);
+
+            walked.addAll(page.getContent());
+            after = page.getNext();
+            pages++;
+        } while (after != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(walked).extracting(BeerOrderSummaryDTO::getId).isEqualTo(placed);
+
+        // the oldest order has one line of the first beer, the newest one a line of each of the first five
+        BeerOrderSummaryDTO oldest = walked.get(4);
+        assertThat(oldest.getLineCount()).isEqualTo(1);
+        assertThat(oldest.getTotal()).isEqualByComparingTo(beers.get(0).getPrice());
+        assertThat(oldest.getCreatedDate()).isNotNull();
+
+        BigDecimal newestTotal = BigDecimal.ZERO;
+        for (int i = 0; i < 5; i++) {
+            newestTotal = newestTotal.add(beers.get(i).getPrice().multiply(BigDecimal.valueOf(i + 1)));
+        }
+        assertThat(walked.get(0).getLineCount()).isEqualTo(5);
+        assertThat(walked.get(0).getTotal()).isEqualByComparingTo(newestTotal);
+    }
+
+    @Test
+    void testListCustomerOrdersUnknownCustomer() {
+        assertThat(beerOrderService.listCustomerOrders(UUID.randomUUID(), null, null)).isEmpty();
+    }
+
+    @Test
+    void testListCustomerOrdersInvalidCursor() {
+        String after = new KeysetCursor("yesterday", UUID.randomUUID()).encode();
+
+        assertThrows(BadRequestException.class,
+                () -> beerOrderService.listCustomerOrders(customer.getId(), after, null));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrderUnknownBeer() {
+        BeerOrderCreateDTO order = order(2, null);
+        order.getBeerOrderLines().add(new BeerOrderLineCreateDTO(UUID.randomUUID(), 1));
+
+        assertThrows(BadRequestException.class, () -> beerOrderService.placeOrder(order));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlaceOrderUnknownCustomer() {
+        BeerOrderCreateDTO order = order(1, null);
+        order.setCustomerId(UUID.randomUUID());
+
+        assertThrows(BadRequestException.class, () -> beerOrderService.placeOrder(order));
+    }
+
+    private BeerOrderCreateDTO order(int lines, String customerRef) {
+        List<BeerOrderLineCreateDTO> orderLines = new ArrayList<>();
+
+        for (int i = 0; i < lines; i++) {
+            orderLines.add(new BeerOrderLineCreateDTO(beers.get(i).getId(), i + 1));
+        }
+
+        return new BeerOrderCreateDTO(customer.getId(), customerRef, orderLines);
+    }
+}
@@ -0,0 +1,87 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers
+@SpringBootTest
+@ActiveProfiles("localmysql")
+class BeerOrderServiceMySqlIT {
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mySQLContainer = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    CustomerOrderRollupService customerOrderRollupService;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Test
+    void testConcurrentFirstOrdersDontDeadlock() throws Exception {
+        // a customer without a rollup - both orders race to create it
+        Customer customer = customerRepository.save(Customer.builder()
+                .name("Concurrent First Orders")
+                .build());
+        Beer beer = beerRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+        BeerOrderCreateDTO order = new BeerOrderCreateDTO(customer.getId(), null,
+                List.of(new BeerOrderLineCreateDTO(beer.getId(), 2)));
+
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            List<Future<?>> placed = List.of(
+                    executor.submit(() -> {
+                        start.await();
+                        return beerOrderService.placeOrder(order);
+                    }),
+                    executor.submit(() -> {
+                        start.await();
+                        return beerOrderService.placeOrder(order);
+                    }));
+
+            // a deadlock victim surfaces here as an ExecutionException
+            for (Future<?> future : placed) {
+                assertThat(future.get(30, TimeUnit.SECONDS)).isNotNull();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        CustomerOrderRollupDTO rollup = customerOrderRollupService.getRollup(customer.getId()).orElseThrow();
+
+        assertThat(rollup.getOrderCount()).isEqualTo(2);
+        assertThat(rollup.getUnitsBought()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,201 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.StatementCounter;
+import guru.springframework.spring6restmvc.controller.BadRequestException;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerSalesDTO;
+import guru.springframework.spring6restmvc.model.BeerStyle;
+import guru.springframework.spring6restmvc.model.SalesReportDTO;
+import guru.springframework.spring6restmvc.model.StyleSalesDTO;
+import guru.springframework.spring6restmvc.repositories.BeerOrderLineRepository;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerOrderRollupRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.transaction.AfterTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// several slices, each read in more than one chunk
+@SpringBootTest(properties = {"beer.sales.chunk-size=400", "beer.sales.partitions=8"})
+class BeerSalesServiceImplTest {
+
+    @Autowired
+    BeerSalesService beerSalesService;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerOrderLineRepository beerOrderLineRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    CustomerOrderRollupRepository customerOrderRollupRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManager entityManager;
+
+    final List<UUID> placedOrderIds = new ArrayList<>();
+
+    UUID customerId;
+
+    // outside the test's transaction, as the orders were committed
+    @AfterTransaction
+    void deletePlacedOrders() {
+        if (placedOrderIds.isEmpty())
+            return;
+
+        // lines first, then orders and shipments, which refer to each other
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            entityManager.createQuery("delete from BeerOrderLine l where l.beerOrder.id in :ids")
+                    .setParameter("ids", placedOrderIds)
+                    .executeUpdate();
+            List<UUID> shipmentIds = entityManager.createQuery(
+                            "select o.beerOrderShipment.id from BeerOrder o where o.id in :ids", UUID.class)
+                    .setParameter("ids", placedOrderIds)
+                    .getResultList();
+            entityManager.createQuery("update BeerOrderShipment s set s.beerOrder = null where s.id in :ids")
+                    .setParameter("ids", shipmentIds)
+                    .executeUpdate();
+            entityManager.createQuery("delete from BeerOrder o where o.id in :ids")
+                    .setParameter("ids", placedOrderIds)
+                    .executeUpdate();
+            entityManager.createQuery("delete from BeerOrderShipment s where s.id in :ids")
+                    .setParameter("ids", shipmentIds)
+                    .executeUpdate();
+        });
+
+        customerOrderRollupRepository.deleteRollups(List.of(customerId));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testSameAsSequentialAggregation() {
+        placeOrders();
+
+        LocalDate from = LocalDate.now().minusDays(1);
+        LocalDate to = LocalDate.now().plusDays(1);
+
+        SalesReportDTO report = beerSalesService.getSalesReport(from, to, 20);
+
+        // what a GROUP BY would return
+        List<BeerOrderLine> lines = beerOrderLineRepository.findAll();
+        Map<Beer, Long> unitsByBeer = lines.stream()
+                .collect(Collectors.groupingBy(BeerOrderLine::getBeer,
+                        Collectors.summingLong(BeerOrderLine::getOrderQuantity)));
+        Comparator<Map.Entry<Beer, Long>> ranking = Map.Entry.<Beer, Long>comparingByValue().reversed()
+                .thenComparing(entry -> entry.getKey().getBeerName())
+                .thenComparing(entry -> entry.getKey().getId());
+
+        assertThat(report.getLinesScanned()).isEqualTo(lines.size());
+        assertThat(report.getUnitsSold()).isEqualTo(unitsByBeer.values().stream().mapToLong(Long::longValue).sum());
+        assertThat(report.getTopBeers()).hasSize(20);
+        assertThat(report.getTopBeers()).extracting(BeerSalesDTO::getBeerId)
+                .isEqualTo(unitsByBeer.entrySet().stream().sorted(ranking).limit(20)
+                        .map(entry -> entry.getKey().getId()).toList());
+        assertThat(report.getTopBeers()).allSatisfy(beer ->
+                assertThat(beer.getBeerName()).isNotNull());
+
+        for (StyleSalesDTO style : report.getStyles()) {
+            List<Map.Entry<Beer, Long>> ofStyle = unitsByBeer.entrySet().stream()
+                    .filter(entry -> entry.getKey().getBeerStyle() == style.getBeerStyle())
+                    .sorted(ranking)
+                    .toList();
+
+            assertThat(style.getUnitsSold()).isEqualTo(ofStyle.stream().mapToLong(Map.Entry::getValue).sum());
+            assertThat(style.getTopBeers()).extracting(BeerSalesDTO::getBeerId)
+                    .isEqualTo(ofStyle.stream().limit(20).map(entry -> entry.getKey().getId()).toList());
+            assertThat(style.getTopBeers()).extracting(BeerSalesDTO::getBeerStyle).containsOnly(style.getBeerStyle());
+        }
+
+        Set<BeerStyle> soldStyles = unitsByBeer.keySet().stream().map(Beer::getBeerStyle).collect(Collectors.toSet());
+        assertThat(report.getStyles()).extracting(StyleSalesDTO::getBeerStyle)
+                .containsExactlyInAnyOrderElementsOf(soldStyles);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testReportsAreCached() {
+        placeOrders();
+
+        LocalDate from = LocalDate.now().minusDays(2);
+        LocalDate to = LocalDate.now().plusDays(2);
+
+        SalesReportDTO report = beerSalesService.getSalesReport(from, to, 5);
+
+        StatementCounter.start();
+        SalesReportDTO cached = beerSalesService.getSalesReport(from, to, 3);
+        assertThat(StatementCounter.stop()).isEmpty();
+
+        assertThat(cached.getGeneratedDate()).isEqualTo(report.getGeneratedDate());
+        assertThat(cached.getTopBeers()).isEqualTo(report.getTopBeers().subList(0, 3));
+    }
+
+    @Test
+    void testNoSales() {
+        LocalDate from = LocalDate.of(2001, 1, 1);
+
+        SalesReportDTO report = beerSalesService.getSalesReport(from, from.plusDays(7), 10);
+
+        assertThat(report.getLinesScanned()).isZero();
+        assertThat(report.getUnitsSold()).isZero();
+        assertThat(report.getTopBeers()).isEmpty();
+        assertThat(report.getStyles()).isEmpty();
+    }
+
+    @Test
+    void testFromAfterTo() {
+        assertThrows(BadRequestException.class,
+                () -> beerSalesService.getSalesReport(LocalDate.now(), LocalDate.now().minusDays(1), 10));
+    }
+
+    // ~3000 lines with skewed quantities - many small sales of a few beers, and one of many others. Each order is
+    // committed right away, as the slices are read by other threads, but the test's transaction sees it
+    private void placeOrders() {
+        customerId = customerRepository.findAll().get(0).getId();
+        List<Beer> beers = beerRepository.findAll(PageRequest.of(0, 1000)).getContent();
+
+        TransactionTemplate ownTransaction = new TransactionTemplate(transactionManager);
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (int order = 0; order < 3; order++) {
+            List<BeerOrderLineCreateDTO> lines = new ArrayList<>();
+
+            for (int i = 0; i < 1000; i++) {
+                Beer beer = order == 0 ? beers.get(i) : beers.get(i % (40 * order));
+                lines.add(new BeerOrderLineCreateDTO(beer.getId(), 1 + (i * 7 + order) % 13));
+            }
+
+            BeerOrderCreateDTO placing = new BeerOrderCreateDTO(customerId, "order " + order, lines);
+            placedOrderIds.add(ownTransaction.execute(status -> beerOrderService.placeOrder(placing).getId()));
+        }
+    }
+}
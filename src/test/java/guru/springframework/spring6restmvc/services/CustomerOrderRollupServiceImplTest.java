@@ -0,0 +1,186 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.StatementCounter;
+import guru.springframework.spring6restmvc.entities.Beer;
+import guru.springframework.spring6restmvc.entities.BeerOrder;
+import guru.springframework.spring6restmvc.entities.BeerOrderLine;
+import guru.springframework.spring6restmvc.entities.BeerOrderShipment;
+import guru.springframework.spring6restmvc.entities.Customer;
+import guru.springframework.spring6restmvc.model.BeerOrderCreateDTO;
+import guru.springframework.spring6restmvc.model.BeerOrderLineCreateDTO;
+import guru.springframework.spring6restmvc.model.CustomerOrderRollupDTO;
+import guru.springframework.spring6restmvc.model.RollupRebuildResult;
+import guru.springframework.spring6restmvc.repositories.BeerOrderRepository;
+import guru.springframework.spring6restmvc.repositories.BeerRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerOrderRollupRepository;
+import guru.springframework.spring6restmvc.repositories.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CustomerOrderRollupServiceImplTest {
+
+    @Autowired
+    CustomerOrderRollupService customerOrderRollupService;
+
+    @Autowired
+    CustomerOrderRollupRepository customerOrderRollupRepository;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerOrderRepository beerOrderRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    Customer customer;
+    Beer beer1;
+    Beer beer2;
+
+    @BeforeEach
+    void setUp() {
+        customer = customerRepository.findAll().get(0);
+
+        List<Beer> beers = beerRepository.findAll(PageRequest.of(0, 2)).getContent();
+        beer1 = beers.get(0);
+        beer2 = beers.get(1);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testPlacingOrdersUpdatesRollup() {
+        placeOrder(customer, 2, 3);
+        placeOrder(customer, 1, 0);
+
+        CustomerOrderRollupDTO rollup = customerOrderRollupService.getRollup(customer.getId()).orElseThrow();
+
+        assertThat(rollup.getOrderCount()).isEqualTo(2);
+        assertThat(rollup.getUnitsBought()).isEqualTo(6);
+        assertThat(rollup.getSpend()).isEqualByComparingTo(expectedSpend(3, 3));
+        assertThat(rollup.getLastOrderDate()).isNotNull();
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testFirstPlacedOrderCountsEarlierOrders() {
+        // an order from before the rollup existed
+        BeerOrder earlier = beerOrderRepository.save(BeerOrder.builder()
+                .customer(customerRepository.getReferenceById(customer.getId()))
+                .beerOrderShipment(BeerOrderShipment.builder().build())
+                .build());
+        entityManager.persist(BeerOrderLine.builder().beerOrder(earlier).beer(beer2).orderQuantity(5)
+                .unitPrice(beer2.getPrice()).build());
+        entityManager.flush();
+
+        StatementCounter.start();
+        placeOrder(customer, 1, 0);
+        List<String> statements = StatementCounter.stop();
+
+        // the customer is locked before the order is written, then the missing rollup is computed from its orders
+        assertThat(statements.get(0)).startsWith("select c1_0.id from customer").contains("for update");
+        assertThat(statements).anyMatch(sql -> sql.startsWith("insert into customer_order_rollup"));
+
+        CustomerOrderRollupDTO rollup = customerOrderRollupService.getRollup(customer.getId()).orElseThrow();
+
+        assertThat(rollup.getOrderCount()).isEqualTo(2);
+        assertThat(rollup.getUnitsBought()).isEqualTo(6);
+        assertThat(rollup.getSpend()).isEqualByComparingTo(expectedSpend(1, 5));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void testRebuildMatchesIncrementalRollups() {
+        Customer otherCustomer = customerRepository.findAll().get(1);
+
+        placeOrder(customer, 4, 1);
+        placeOrder(otherCustomer, 0, 7);
+        placeOrder(otherCustomer, 2, 2);
+        entityManager.clear();
+
+        CustomerOrderRollupDTO incremental = customerOrderRollupService.getRollup(customer.getId()).orElseThrow();
+        CustomerOrderRollupDTO otherIncremental = customerOrderRollupService.getRollup(otherCustomer.getId())
+                .orElseThrow();
+
+        // drifted totals are fixed by the rebuild
+        customerOrderRollupRepository.addOrder(customer.getId(), 100, new BigDecimal("999.99"), null);
+
+        // while a price change since the orders were placed is not
+        entityManager.createQuery("update Beer b set b.price = b.price + 10 where b.id = :id")
+                .setParameter("id", beer1.getId())
+                .executeUpdate();
+
+        RollupRebuildResult result = customerOrderRollupService.rebuild();
+
+        assertThat(result.getCustomers()).isEqualTo(customerRepository.count());
+        assertThat(result.getRollups()).isEqualTo(2);
+
+        assertRollup(customerOrderRollupService.getRollup(customer.getId()).orElseThrow(), incremental);
+        assertRollup(customerOrderRollupService.getRollup(otherCustomer.getId()).orElseThrow(), otherIncremental);
+    }
+
+    @Test
+    void testCustomerWithoutOrders() {
+        Customer customerWithoutOrders = customerRepository.findAll().get(2);
+
+        CustomerOrderRollupDTO rollup = customerOrderRollupService.getRollup(customerWithoutOrders.getId())
+                .orElseThrow();
+
+        assertThat(rollup.getOrderCount()).isZero();
+        assertThat(rollup.getUnitsBought()).isZero();
+        assertThat(rollup.getSpend()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(rollup.getLastOrderDate()).isNull();
+    }
+
+    @Test
+    void testUnknownCustomer() {
+        assertThat(customerOrderRollupService.getRollup(UUID.randomUUID())).isEmpty();
+    }
+
+    private void assertRollup(CustomerOrderRollupDTO rollup, CustomerOrderRollupDTO expected) {
+        assertThat(rollup.getOrderCount()).isEqualTo(expected.getOrderCount());
+        assertThat(rollup.getUnitsBought()).isEqualTo(expected.getUnitsBought());
+        assertThat(rollup.getSpend()).isEqualByComparingTo(expected.getSpend());
+        assertThat(rollup.getLastOrderDate()).isEqualTo(expected.getLastOrderDate());
+    }
+
+    private BigDecimal expectedSpend(int quantity1, int quantity2) {
+        return beer1.getPrice().multiply(BigDecimal.valueOf(quantity1))
+                .add(beer2.getPrice().multiply(BigDecimal.valueOf(quantity2)));
+    }
+
+    // an order with the given quantities of beer1 and beer2, leaving out a beer with quantity 0
+    private void placeOrder(Customer orderingCustomer, int quantity1, int quantity2) {
+        List<BeerOrderLineCreateDTO> lines = new ArrayList<>();
+
+        if (quantity1 > 0)
+            lines.add(new BeerOrderLineCreateDTO(beer1.getId(), quantity1));
+        if (quantity2 > 0)
+            lines.add(new BeerOrderLineCreateDTO(beer2.getId(), quantity2));
+
+        beerOrderService.placeOrder(new BeerOrderCreateDTO(orderingCustomer.getId(), null, lines));
+    }
+}
@@ -0,0 +1,131 @@
+package guru.springframework.spring6restmvc.services;
+
+import guru.springframework.spring6restmvc.model.BeerCSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.ResourceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedBeerCsvServiceImplTest {
+
+    BeerCsvServiceImpl openCsvService = new BeerCsvServiceImpl();
+
+    MappedBeerCsvServiceImpl mappedCsvService = new MappedBeerCsvServiceImpl(openCsvService);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameRecordsAsOpenCsv() throws IOException {
+        File file = ResourceUtils.getFile("classpath:csvdata/beers.csv");
+
+        List<BeerCSVRecord> expected = openCsvService.convertCSV(file);
+        List<BeerCSVRecord> records = mappedCsvService.convertCSV(file);
+
+        assertThat(records).hasSize(2410);
+        assertThat(records).isEqualTo(expected);
+    }
+
+    @Test
+    void testParallelSameRecordsAsSequential() throws IOException {
+        // big enough to be split into several ranges
+        File file = inflatedCopy(20);
+
+        Map<BeerCSVRecord, Integer> sequential = new HashMap<>();
+        mappedCsvService.parseCSV(file, false, beerCSVRecord -> sequential.merge(beerCSVRecord, 1, Integer::sum));
+
+        Map<BeerCSVRecord, Integer> parallel = new ConcurrentHashMap<>();
+        mappedCsvService.parseCSV(file, true, beerCSVRecord -> parallel.merge(beerCSVRecord, 1, Integer::sum));
+
+        assertThat(sequential.values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(2410 * 20);
+        assertThat(parallel).isEqualTo(sequential);
+    }
+
+    @Test
+    void testQuotingAndLineEndings() throws IOException {
+        Path file = tempDir.resolve("quoted.csv");
+        Files.writeString(file, """
+                "row","beer","brewery","style","ounces","count.x"\r
+                "1","Hop, Skip & Jump","Brewery, Inc.","American IPA",16.9,\r
+                2,"The ""Big"" One",,"Oatmeal Stout",12,7\r
+                3,Ünicode Ale,x,English Pale Ale,,3""", StandardCharsets.UTF_8);
+
+        List<BeerCSVRecord> records = mappedCsvService.convertCSV(file.toFile());
+
+        assertThat(records).isEqualTo(openCsvService.convertCSV(file.toFile()));
+        assertThat(records).hasSize(3);
+
+        assertThat(records.get(0).getBeer()).isEqualTo("Hop, Skip & Jump");
+        assertThat(records.get(0).getOunces()).isEqualTo(16.9f);
+        assertThat(records.get(0).getCount()).isNull();
+        assertThat(records.get(1).getBeer()).isEqualTo("The \"Big\" One");
+        assertThat(records.get(2).getBeer()).isEqualTo("Ünicode Ale");
+        assertThat(records.get(2).getOunces()).isNull();
+        assertThat(records.get(2).getCount()).isEqualTo(3);
+    }
+
+    /**
+     * Opt-in benchmark against the OpenCSV implementation on beers.csv inflated 200 times (~480k rows),
+     * run with {@code mvn test -Dtest=MappedBeerCsvServiceImplTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstOpenCsv() throws IOException {
+        File file = inflatedCopy(200);
+
+        for (int round = 0; round < 3; round++) {
+            long openCsv = time(() -> openCsvService.parseCSV(file, false, beerCSVRecord -> {
+            }));
+            long mapped = time(() -> mappedCsvService.parseCSV(file, false, beerCSVRecord -> {
+            }));
+            long mappedParallel = time(() -> mappedCsvService.parseCSV(file, true, beerCSVRecord -> {
+            }));
+
+            System.out.printf("round %d (%d MB) - OpenCSV: %d ms, mapped: %d ms, mapped parallel: %d ms%n",
+                    round, file.length() >> 20, openCsv, mapped, mappedParallel);
+        }
+
+        AtomicLong count = new AtomicLong();
+        mappedCsvService.parseCSV(file, true, beerCSVRecord -> count.incrementAndGet());
+        assertThat(count.get()).isEqualTo(2410L * 200);
+    }
+
+    private static long time(Runnable parse) {
+        long start = System.nanoTime();
+        parse.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // beers.csv with its data lines repeated
+    private File inflatedCopy(int times) throws IOException {
+        List<String> lines = Files.readAllLines(ResourceUtils.getFile("classpath:csvdata/beers.csv").toPath());
+        Path inflated = tempDir.resolve("beers-x" + times + ".csv");
+
+        try (var writer = Files.newBufferedWriter(inflated, StandardCharsets.UTF_8)) {
+            writer.write(lines.get(0));
+            writer.newLine();
+
+            for (int i = 0; i < times; i++) {
+                for (String line : lines.subList(1, lines.size())) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        }
+
+        return inflated.toFile();
+    }
+}